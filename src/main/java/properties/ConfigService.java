@@ -0,0 +1,348 @@
+package properties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Loads the test configuration once and serves it from an immutable in-memory snapshot.
+ * <p>
+ * Values are merged from, lowest to highest precedence:
+ * <ol>
+ *     <li>src/test/resources/configs.properties</li>
+ *     <li>one {@code configs-<profile>.properties} next to it per profile listed in {@code config.profiles}
+ *         (system property, {@code CONFIG_PROFILES} environment variable or the base file), in order</li>
+ *     <li>environment variables named after a key in upper snake case, e.g. {@code DRIVER_POOL_SIZE}
+ *         for {@code driverPoolSize} and {@code CRAWL_HTTP_FIRST} for {@code crawl.httpFirst}</li>
+ *     <li>system properties with the exact key name, e.g. {@code -DdriverPoolSize=4}</li>
+ *     <li>changes set through {@link PropertyStore} that are not written to the file yet</li>
+ * </ol>
+ * Reads go to a volatile reference to an unmodifiable map, so they take no lock and allocate nothing.
+ * Keys that no file defines are looked up in the system properties and environment once per snapshot;
+ * the outcome, found or not, is kept until the next reload.
+ * The files are watched with a {@link WatchService}; a change builds a new snapshot and swaps it in,
+ * and is the only time the files are parsed again.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     ConfigService config = ConfigService.getInstance();
+ *     int poolSize = config.getInt("driverPoolSize", 1);
+ *     boolean headless = config.getBoolean("profile.ci.headless", false);
+ * </pre>
+ */
+public final class ConfigService {
+
+    static String projectPath = System.getProperty("user.dir") + "/";
+    static final Path CONFIG_FILE = Paths.get(projectPath + "src/test/resources/configs.properties");
+
+    private static volatile ConfigService instance;
+
+    private final Path baseFile;
+    private final List<Consumer<ConfigService>> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile Map<String, String> values;
+    /** System property / environment lookups of keys no file defines, including misses; reset on reload. */
+    private volatile Map<String, Optional<String>> unsetKeys = new ConcurrentHashMap<>();
+    private volatile List<Path> sourceFiles;
+
+    private ConfigService(Path baseFile) {
+        this.baseFile = baseFile;
+        reload();
+    }
+
+    /**
+     * Returns the JVM-wide configuration, loading it and starting the file watcher on first use.
+     *
+     * @return the ConfigService instance.
+     */
+    public static ConfigService getInstance() {
+        ConfigService config = instance;
+        if (config == null) {
+            synchronized (ConfigService.class) {
+                config = instance;
+                if (config == null) {
+                    config = new ConfigService(CONFIG_FILE);
+                    config.startWatching();
+                    instance = config;
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Gets a value.
+     * <p>
+     * Keys that no file defines are looked up in the system properties and then in the environment
+     * with the same precedence, so an override works for optional keys without a file entry too. That
+     * lookup happens once per key until the next {@link #reload()}.
+     *
+     * @param key the configuration key.
+     * @return the trimmed value, or null if the key is not set anywhere.
+     */
+    public String get(String key) {
+        String value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        Map<String, Optional<String>> lookups = unsetKeys;
+        Optional<String> override = lookups.get(key);
+        if (override == null) {
+            String found = System.getProperty(key);
+            if (found == null) {
+                found = System.getenv(environmentName(key));
+            }
+            override = found == null ? Optional.<String>empty() : Optional.of(found.trim());
+            lookups.putIfAbsent(key, override);
+        }
+        return override.orElse(null);
+    }
+
+    /**
+     * Gets a value, falling back to a default when it is missing or blank.
+     *
+     * @param key          the configuration key.
+     * @param defaultValue the value returned when the key is not set or empty.
+     * @return the configured value or {@code defaultValue}.
+     */
+    public String get(String key, String defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Gets an integer value.
+     *
+     * @param key          the configuration key.
+     * @param defaultValue the value returned when the key is not set or empty.
+     * @return the configured value or {@code defaultValue}.
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Gets a long value.
+     *
+     * @param key          the configuration key.
+     * @param defaultValue the value returned when the key is not set or empty.
+     * @return the configured value or {@code defaultValue}.
+     * @throws NumberFormatException if the value is not a long.
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Gets a decimal value.
+     *
+     * @param key          the configuration key.
+     * @param defaultValue the value returned when the key is not set or empty.
+     * @return the configured value or {@code defaultValue}.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets a boolean value; anything other than "true" (ignoring case) is false.
+     *
+     * @param key          the configuration key.
+     * @param defaultValue the value returned when the key is not set or empty.
+     * @return the configured value or {@code defaultValue}.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Gets every merged key and value.
+     *
+     * @return an unmodifiable view of the current snapshot.
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    /**
+     * Registers a callback that runs after every reload, e.g. to rebuild state derived from the config.
+     *
+     * @param listener receives this service after the new snapshot is in place.
+     */
+    public void addReloadListener(Consumer<ConfigService> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Re-reads the files, environment and system properties and swaps in the new snapshot.
+     * Called by the file watcher; callers that just wrote the file may call it to see their change at once.
+     */
+    public synchronized void reload() {
+        Map<String, String> merged = new HashMap<>();
+        List<Path> sources = new ArrayList<>();
+        load(baseFile, merged, sources);
+
+        String profiles = System.getProperty("config.profiles", System.getenv("CONFIG_PROFILES"));
+        if (profiles == null) {
+            profiles = merged.get("config.profiles");
+        }
+        if (profiles != null) {
+            for (String profile : profiles.split(",")) {
+                if (!profile.trim().isEmpty()) {
+                    load(baseFile.resolveSibling("configs-" + profile.trim() + ".properties"), merged, sources);
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> entry : new ArrayList<>(merged.entrySet())) {
+            String fromEnv = System.getenv(environmentName(entry.getKey()));
+            if (fromEnv != null) {
+                entry.setValue(fromEnv.trim());
+            }
+            String fromSystem = System.getProperty(entry.getKey());
+            if (fromSystem != null) {
+                entry.setValue(fromSystem.trim());
+            }
+        }
+
+        // Changes saved through PropertyStore but not yet on disk win, so writers read their own writes
+        merged.putAll(PropertyStore.pendingValues());
+
+        values = Collections.unmodifiableMap(merged);
+        unsetKeys = new ConcurrentHashMap<>();
+        sourceFiles = Collections.unmodifiableList(sources);
+        for (Consumer<ConfigService> listener : reloadListeners) {
+            try {
+                listener.accept(this);
+            } catch (Exception e) {
+                System.out.println("Config reload listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replaces a single value in the current snapshot, copying it. Used for changes that are not written yet.
+     *
+     * @param key   the key to set.
+     * @param value the new value.
+     */
+    synchronized void overlay(String key, String value) {
+        Map<String, String> copy = new HashMap<>(values);
+        copy.put(key, value.trim());
+        values = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Maps a key to its environment variable name: camel case and dots become upper snake case.
+     *
+     * @param key the configuration key, e.g. "crawl.httpFirst".
+     * @return the variable name, e.g. "CRAWL_HTTP_FIRST".
+     */
+    static String environmentName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(key.charAt(i - 1))) {
+                name.append('_');
+            }
+            name.append(c == '.' || c == '-' ? '_' : Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+
+    private static void load(Path file, Map<String, String> target, List<Path> sources) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.out.println("Could not read " + file + ": " + e.getMessage());
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            target.put(key, properties.getProperty(key).trim());
+        }
+        sources.add(file);
+    }
+
+    /**
+     * Watches the config directory on a daemon thread and reloads when one of the loaded files
+     * (or a profile file that may now exist) changes.
+     */
+    private void startWatching() {
+        Path directory = baseFile.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        final WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.out.println("Config file watching disabled: " + e.getMessage());
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path && isConfigFile((Path) context)) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        // Editors and atomic renames raise several events per save; let them settle
+                        Thread.sleep(100);
+                        for (WatchKey pending = watcher.poll(); pending != null; pending = watcher.poll()) {
+                            pending.pollEvents();
+                            pending.reset();
+                        }
+                        reload();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // JVM shutting down
+            }
+        }, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean isConfigFile(Path fileName) {
+        String name = fileName.toString();
+        return name.equals(baseFile.getFileName().toString())
+                || name.startsWith("configs-") && name.endsWith(".properties")
+                || sourceFiles.contains(baseFile.resolveSibling(fileName));
+    }
+}
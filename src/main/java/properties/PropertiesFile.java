@@ -1,14 +1,13 @@
 package properties;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.util.Properties;
-
 /**
  * A utility class for reading and writing key-value pairs to a properties file.
  * <p>
  * The properties file is located at: src/test/resources/configs.properties
  * <p>
+ * Reads are served by {@link ConfigService}, which loads the file once, merges profiles, environment
+ * variables and system properties, and reloads only when the file changes.
+ * <p>
  * Typical usage:
  * <pre>
  *     PropertiesFile.setPropertiesFile();
@@ -18,69 +17,57 @@ import java.util.Properties;
  */
 public class PropertiesFile {
 
-    private static Properties properties;
-    private static FileInputStream fileIn;
-    private static FileOutputStream fileOut;
-
-    // Get the current project path
-    static String projectPath = System.getProperty("user.dir") + "/";
-
-    // Define path of configs.properties file
-    private static String propertiesFilePathRoot = "src/test/resources/configs.properties";
-
     /**
-     * Initializes the Properties object and loads the key-value pairs from the properties file.
+     * Makes sure the configuration is loaded.
      * <p>
-     * This method must be called before any get or set operations to ensure
-     * that the properties are correctly loaded into memory from the file.
+     * The file is parsed once per JVM; calling this again is cheap and does not re-read it.
      */
     public static void setPropertiesFile() {
-        properties = new Properties();
-        try {
-            fileIn = new FileInputStream(projectPath + propertiesFilePathRoot);
-            properties.load(fileIn);
-        } catch (Exception exp) {
-            System.out.println(exp.getMessage());
-            System.out.println(exp.getCause());
-            exp.printStackTrace();
-        }
+        ConfigService.getInstance();
     }
 
     /**
      * Retrieves the value associated with the specified key from the loaded properties file.
      *
      * @param KeyProp the key whose corresponding value is to be fetched from the properties file.
-     * @return the value mapped to the specified key, or null if the key is not found
-     *         or an exception occurs during retrieval.
+     * @return the value mapped to the specified key, or null if the key is not found.
      */
     public static String getPropValue(String KeyProp) {
-        String value = null;
-        try {
-            value = properties.getProperty(KeyProp);
-            System.out.println(value);
-            return value;
-        } catch (Exception exp) {
-            System.out.println(exp.getMessage());
-            System.out.println(exp.getCause());
-            exp.printStackTrace();
-        }
-        return value;
+        return ConfigService.getInstance().get(KeyProp);
+    }
+
+    /**
+     * Retrieves the value associated with the specified key, falling back to a default
+     * when the key is missing or blank.
+     *
+     * @param KeyProp      the key whose corresponding value is to be fetched from the properties file.
+     * @param defaultValue the value returned when the key is not present or empty.
+     * @return the configured value, or {@code defaultValue} if none is set.
+     */
+    public static String getPropValue(String KeyProp, String defaultValue) {
+        return ConfigService.getInstance().get(KeyProp, defaultValue);
     }
 
     /**
      * Sets or updates the value for a given key in the properties file and saves the changes.
      * <p>
-     * This method writes the new or updated key-value pair to the file and persists it on disk.
+     * The change is visible to readers at once and written to disk by {@link PropertyStore} together
+     * with the other changes of the same short batch window, atomically and under a cross-process lock.
+     * Call {@link #flushPropValues()} to wait until it is on disk.
      *
      * @param KeyProp the key for which the value is to be set or updated.
      * @param Value   the value to associate with the given key.
      */
     public static void setPropValue(String KeyProp, String Value) {
+        PropertyStore.getInstance().set(KeyProp, Value);
+    }
+
+    /**
+     * Writes every pending {@link #setPropValue(String, String)} change to the file now.
+     */
+    public static void flushPropValues() {
         try {
-            fileOut = new FileOutputStream(projectPath + propertiesFilePathRoot);
-            properties.setProperty(KeyProp, Value);
-            properties.store(fileOut, "Set new value in properties file");
-            System.out.println("Set new value in file properties success.");
+            PropertyStore.getInstance().flush();
         } catch (Exception exp) {
             System.out.println(exp.getMessage());
             System.out.println(exp.getCause());
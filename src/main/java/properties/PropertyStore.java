@@ -0,0 +1,330 @@
+package properties;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Crash-safe, batched write path for configs.properties.
+ * <p>
+ * {@link #set(String, String)} only records the change; changes made within
+ * {@code config.writeBatchMs} are coalesced and written together by one flush. A flush:
+ * <ol>
+ *     <li>takes an exclusive {@link FileLock} on {@code configs.properties.lock}, so writers in other JVMs wait</li>
+ *     <li>re-reads the current file, so keys written meanwhile by other processes are kept</li>
+ *     <li>updates the changed keys in place, keeping comments, order and line separators, and appends new keys</li>
+ *     <li>writes a temporary file next to it with the permissions of the original, fsyncs it and atomically
+ *         renames it over the original</li>
+ * </ol>
+ * Readers therefore see either the old or the new file, never a truncated one. Pending changes are
+ * visible through {@link ConfigService} immediately and flushed when the JVM exits.
+ */
+public final class PropertyStore {
+
+    private static volatile PropertyStore instance;
+
+    private final Path file;
+    private final Path lockFile;
+    private final long batchMillis;
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private boolean flushScheduled;
+
+    /**
+     * Creates a store for a properties file. Use {@link #getInstance()} for configs.properties.
+     *
+     * @param file        the properties file.
+     * @param batchMillis how long changes are collected before they are written.
+     */
+    PropertyStore(Path file, long batchMillis) {
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.batchMillis = batchMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "config-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the store for configs.properties.
+     *
+     * @return the JVM-wide PropertyStore instance.
+     */
+    public static PropertyStore getInstance() {
+        PropertyStore store = instance;
+        if (store == null) {
+            synchronized (PropertyStore.class) {
+                store = instance;
+                if (store == null) {
+                    store = new PropertyStore(ConfigService.CONFIG_FILE,
+                            ConfigService.getInstance().getLong("config.writeBatchMs", 100));
+                    final PropertyStore shutdownStore = store;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            shutdownStore.flush();
+                        } catch (IOException e) {
+                            System.out.println("Could not save pending properties: " + e.getMessage());
+                        }
+                    }, "config-writer-shutdown"));
+                    instance = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Gets the changes not yet written, if a store has been created.
+     *
+     * @return the pending keys and values; empty if nothing was set in this JVM.
+     */
+    static Map<String, String> pendingValues() {
+        PropertyStore store = instance;
+        return store == null ? Collections.<String, String>emptyMap() : store.pending;
+    }
+
+    /**
+     * Records a change and schedules it to be written with the current batch.
+     *
+     * @param key   the key to set.
+     * @param value the new value.
+     */
+    public void set(String key, String value) {
+        pending.put(key, value);
+        ConfigService.getInstance().overlay(key, value);
+        scheduleFlush();
+    }
+
+    /**
+     * Records several changes to be written in one batch.
+     *
+     * @param values the keys and values to set.
+     */
+    public void setAll(Map<String, String> values) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            pending.put(entry.getKey(), entry.getValue());
+            ConfigService.getInstance().overlay(entry.getKey(), entry.getValue());
+        }
+        scheduleFlush();
+    }
+
+    private synchronized void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        flusher.schedule(() -> {
+            synchronized (PropertyStore.this) {
+                flushScheduled = false;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                System.out.println("Could not save properties, will retry with the next change: " + e.getMessage());
+            }
+        }, batchMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes every pending change now and waits until it is on disk.
+     *
+     * @throws IOException if the file cannot be written; the changes stay pending.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            Map<String, String> batch = new TreeMap<>(pending);
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Closing the channel would release the lock too; release it explicitly once the file is replaced
+                FileLock lock = lockChannel.lock();
+                try {
+                    String content = Files.exists(file)
+                            ? new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1)
+                            : "";
+                    List<String> lines = new BufferedReader(new StringReader(content)).lines().collect(Collectors.toList());
+                    writeAtomically(merge(lines, batch, lineSeparatorOf(content)));
+                } finally {
+                    lock.release();
+                }
+            }
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            System.out.println("Saved " + batch.size() + " propert" + (batch.size() == 1 ? "y" : "ies") + " to " + file.getFileName());
+        }
+        ConfigService.getInstance().reload();
+    }
+
+    private void writeAtomically(String content) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(content.getBytes(StandardCharsets.ISO_8859_1));
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(true);
+            }
+            if (Files.exists(file)) {
+                copyPermissions(file, temp);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // Persist the rename itself; not supported on every platform
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    /**
+     * Gives the replacement the owner, group and permissions of the original; the temporary file is
+     * created owner-only. Skipped where the file system has no POSIX attributes.
+     */
+    private static void copyPermissions(Path original, Path replacement) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(replacement, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        PosixFileAttributes attributes = Files.readAttributes(original, PosixFileAttributes.class);
+        try {
+            view.setGroup(attributes.group());
+            view.setOwner(attributes.owner());
+        } catch (IOException e) {
+            // Only allowed for privileged users; the writer owns the new file then
+        }
+        view.setPermissions(attributes.permissions());
+    }
+
+    /**
+     * Finds the line separator a file uses, so a rewrite does not change it.
+     *
+     * @param content the file content.
+     * @return the first line separator in it, or the platform separator if it has none.
+     */
+    static String lineSeparatorOf(String content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                return "\n";
+            }
+            if (c == '\r') {
+                return i + 1 < content.length() && content.charAt(i + 1) == '\n' ? "\r\n" : "\r";
+            }
+        }
+        return System.lineSeparator();
+    }
+
+    /**
+     * Replaces the entries of the changed keys in place and appends the keys the file does not have yet.
+     * Comments, blank lines and the order of the other entries are kept.
+     *
+     * @param lines         the lines of the file.
+     * @param changes       the keys and values to set.
+     * @param lineSeparator the separator written after every line.
+     * @return the new file content.
+     * @throws IOException if a line cannot be parsed.
+     */
+    static String merge(List<String> lines, Map<String, String> changes, String lineSeparator) throws IOException {
+        Map<String, String> remaining = new LinkedHashMap<>(changes);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("!")) {
+                out.append(line).append(lineSeparator);
+                continue;
+            }
+
+            StringBuilder logical = new StringBuilder(line);
+            int last = i;
+            while (endsWithContinuation(lines.get(last)) && last + 1 < lines.size()) {
+                last++;
+                logical.append('\n').append(lines.get(last));
+            }
+            String key = keyOf(logical.toString());
+            if (key != null && changes.containsKey(key)) {
+                out.append(formatEntry(key, changes.get(key))).append(lineSeparator);
+                remaining.remove(key);
+            } else {
+                for (int j = i; j <= last; j++) {
+                    out.append(lines.get(j)).append(lineSeparator);
+                }
+            }
+            i = last;
+        }
+        for (Map.Entry<String, String> entry : remaining.entrySet()) {
+            out.append(formatEntry(entry.getKey(), entry.getValue())).append(lineSeparator);
+        }
+        return out.toString();
+    }
+
+    private static boolean endsWithContinuation(String line) {
+        int backslashes = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static String keyOf(String logicalLine) throws IOException {
+        Properties single = new Properties();
+        single.load(new StringReader(logicalLine));
+        return single.isEmpty() ? null : single.stringPropertyNames().iterator().next();
+    }
+
+    /**
+     * Formats one entry with the same escaping as {@link Properties#store}.
+     */
+    private static String formatEntry(String key, String value) throws IOException {
+        Properties single = new Properties();
+        single.setProperty(key, value);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        single.store(bytes, null);
+        for (String line : new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1).split("\\R")) {
+            if (!line.startsWith("#") && !line.isEmpty()) {
+                return line;
+            }
+        }
+        throw new IOException("Could not format property " + key);
+    }
+}
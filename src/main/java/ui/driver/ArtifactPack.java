@@ -0,0 +1,625 @@
+package ui.driver;
+
+import properties.PropertiesFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Append-only pack file for capture artifacts, with a memory-mapped hash index.
+ * <p>
+ * A run writes all of its artifacts into one segment file {@code <run>.pack} as sequential appends.
+ * Each record holds the test name, the step name, the capture time and the content. Records of the same
+ * test are chained newest to oldest, so all artifacts of a test are found without scanning the pack.
+ * <p>
+ * The index {@code <run>.idx} is an open-addressing hash table in a memory-mapped file. It maps both
+ * {@code test} (to the newest record of the test) and {@code test/step} (to that exact record) to a
+ * pack offset, which gives O(1) lookups without any directory listing. The index header records the pack
+ * size it covers, so opening a pack with a current index reads nothing but that header. The pack alone is
+ * the source of truth: records behind the recorded size (written just before a crash) are indexed on the
+ * next open, and a missing or damaged index is rebuilt from the pack, also by {@link #rebuildIndex(Path)}.
+ * <p>
+ * {@link #openReadOnly(Path)} never writes either file, so a pack can be listed while a run still appends to it.
+ * <p>
+ * Extracting from the command line:
+ * <pre>
+ *     java ui.driver.ArtifactPack list ExportData/Packs/run-20240101-120000.pack
+ *     java ui.driver.ArtifactPack extract ExportData/Packs/run-20240101-120000.pack out/ [test]
+ * </pre>
+ */
+public class ArtifactPack implements Closeable {
+
+    static String projectPath = System.getProperty("user.dir") + "/";
+
+    private static final int RECORD_MAGIC = 0x43415052;   // "CAPR"
+    private static final int INDEX_MAGIC = 0x43415049;    // "CAPI"
+    /** magic (4) | slots (4) | entries (4) | unused (4) | pack size covered by the index (8) */
+    private static final int INDEX_HEADER = 24;
+    private static final int INDEX_PACK_END = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final DateTimeFormatter RUN_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static ArtifactPack current;
+
+    private final Path packPath;
+    private final Path indexPath;
+    private final FileChannel pack;
+    private final boolean readOnly;
+    private FileChannel indexChannel;
+    private ByteBuffer index;
+    private int slots;
+    private int entries;
+
+    /**
+     * One artifact in a pack.
+     */
+    public static final class Entry {
+        private final String test;
+        private final String step;
+        private final long capturedAt;
+        private final long dataOffset;
+        private final long length;
+        private final long previousOfTest;
+
+        Entry(String test, String step, long capturedAt, long dataOffset, long length, long previousOfTest) {
+            this.test = test;
+            this.step = step;
+            this.capturedAt = capturedAt;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.previousOfTest = previousOfTest;
+        }
+
+        public String getTest() {
+            return test;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        /**
+         * @return the capture time in epoch milliseconds.
+         */
+        public long getCapturedAt() {
+            return capturedAt;
+        }
+
+        /**
+         * @return the content size in bytes.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return test + "/" + step + " (" + length + " bytes)";
+        }
+    }
+
+    /**
+     * Opens a pack for appending, creating it and its index if needed. Records the index does not cover yet
+     * are indexed, and a torn record at the end (e.g. after a crash) is cut off.
+     *
+     * @param packPath the pack file; the index is written next to it with the extension {@code .idx}.
+     * @param slots    the initial number of index slots (rounded up to a power of two); the index grows as needed.
+     * @throws IOException if the files cannot be opened.
+     */
+    public ArtifactPack(Path packPath, int slots) throws IOException {
+        this(packPath, slots, false);
+    }
+
+    private ArtifactPack(Path packPath, int slots, boolean readOnly) throws IOException {
+        this.packPath = packPath;
+        this.indexPath = indexPathFor(packPath);
+        this.readOnly = readOnly;
+        int slotCount = Integer.highestOneBit(Math.max(16, slots) - 1) << 1;
+        if (readOnly) {
+            this.pack = FileChannel.open(packPath, StandardOpenOption.READ);
+            if (!openIndex()) {
+                // Without a usable index on disk, index the complete records in memory
+                createIndex(slotCount);
+                indexRecords(0);
+            }
+            return;
+        }
+
+        if (packPath.getParent() != null) {
+            Files.createDirectories(packPath.getParent());
+        }
+        this.pack = FileChannel.open(packPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long from;
+        if (openIndex()) {
+            from = index.getLong(INDEX_PACK_END);
+        } else {
+            createIndex(slotCount);
+            from = 0;
+        }
+        if (from < pack.size()) {
+            // Index the records written after the index was last updated, then cut off a torn record so the
+            // next append follows the last complete one instead of landing behind garbage that scan() stops at
+            long end = indexRecords(from);
+            if (end < pack.size()) {
+                System.out.println("Dropping " + (pack.size() - end) + " bytes of a torn record at the end of " + packPath);
+                pack.truncate(end);
+                pack.force(true);
+            }
+            index.putLong(INDEX_PACK_END, end);
+        }
+    }
+
+    /**
+     * Opens an existing pack for reading only. Neither the pack nor its index is written, so this is safe
+     * while another process appends to the pack; records it appends later may not be visible.
+     *
+     * @param packPath the pack file.
+     * @return the pack; appending to it fails.
+     * @throws IOException if the pack cannot be opened.
+     */
+    public static ArtifactPack openReadOnly(Path packPath) throws IOException {
+        return new ArtifactPack(packPath, 4096, true);
+    }
+
+    /**
+     * Returns the pack of the current run, configured from configs.properties ({@code packStore.path},
+     * {@code packStore.runId}, default a timestamp, and {@code packStore.indexSlots}).
+     *
+     * @return the JVM-wide pack, closed automatically when the JVM exits.
+     * @throws IOException if the pack cannot be opened.
+     */
+    public static synchronized ArtifactPack forCurrentRun() throws IOException {
+        if (current == null) {
+            String runId = PropertiesFile.getPropValue("packStore.runId", "run-" + LocalDateTime.now().format(RUN_FORMAT));
+            Path path = Paths.get(projectPath + PropertiesFile.getPropValue("packStore.path", "ExportData/Packs"), runId + ".pack");
+            current = new ArtifactPack(path, Integer.parseInt(PropertiesFile.getPropValue("packStore.indexSlots", "4096")));
+            final ArtifactPack pack = current;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    pack.close();
+                } catch (IOException e) {
+                    System.out.println("Could not close artifact pack: " + e.getMessage());
+                }
+            }, "artifact-pack-close"));
+        }
+        return current;
+    }
+
+    /**
+     * Gets the pack file.
+     *
+     * @return the pack path.
+     */
+    public Path getPath() {
+        return packPath;
+    }
+
+    /**
+     * Appends an artifact.
+     *
+     * @param test    the test name.
+     * @param step    the step name, e.g. "screenshot-12-00-00-000.png"; the extension is kept on extraction.
+     * @param content the artifact bytes.
+     * @throws IOException if the pack or index cannot be written.
+     */
+    public synchronized void append(String test, String step, byte[] content) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException(packPath + " is opened read-only");
+        }
+        byte[] testBytes = test.getBytes(StandardCharsets.UTF_8);
+        byte[] stepBytes = step.getBytes(StandardCharsets.UTF_8);
+        long previous = get(test);
+
+        ByteBuffer header = ByteBuffer.allocate(4 + 8 + 4 + testBytes.length + 4 + stepBytes.length + 8 + 8);
+        header.putInt(RECORD_MAGIC).putLong(previous)
+                .putInt(testBytes.length).put(testBytes)
+                .putInt(stepBytes.length).put(stepBytes)
+                .putLong(System.currentTimeMillis()).putLong(content.length);
+        header.flip();
+
+        long recordOffset = pack.size();
+        pack.position(recordOffset);
+        ByteBuffer[] record = {header, ByteBuffer.wrap(content)};
+        while (record[1].hasRemaining()) {
+            pack.write(record);
+        }
+
+        put(test, recordOffset);
+        put(test + "/" + step, recordOffset);
+        // Last, so the index never claims a record it does not hold
+        index.putLong(INDEX_PACK_END, pack.size());
+    }
+
+    /**
+     * Reads the artifact of a test step.
+     *
+     * @param test the test name.
+     * @param step the step name.
+     * @return the content, or empty if the pack has no such artifact.
+     * @throws IOException if the pack cannot be read.
+     */
+    public synchronized Optional<byte[]> read(String test, String step) throws IOException {
+        long offset = get(test + "/" + step);
+        if (offset < 0) {
+            return Optional.empty();
+        }
+        Entry entry = readEntry(pack, offset);
+        return entry.test.equals(test) && entry.step.equals(step) ? Optional.of(read(entry)) : Optional.<byte[]>empty();
+    }
+
+    /**
+     * Reads the content of an entry.
+     *
+     * @param entry an entry of this pack.
+     * @return the content.
+     * @throws IOException if the pack cannot be read.
+     */
+    public synchronized byte[] read(Entry entry) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) entry.length);
+        readFully(pack, data, entry.dataOffset);
+        return data.array();
+    }
+
+    /**
+     * Lists the artifacts of a test, newest first, by following the per-test chain.
+     *
+     * @param test the test name.
+     * @return the entries; empty if the test has none.
+     * @throws IOException if the pack cannot be read.
+     */
+    public synchronized List<Entry> entries(String test) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        long offset = get(test);
+        while (offset >= 0) {
+            Entry entry = readEntry(pack, offset);
+            if (!entry.test.equals(test)) {
+                break;
+            }
+            result.add(entry);
+            offset = entry.previousOfTest;
+        }
+        return result;
+    }
+
+    /**
+     * Lists every artifact in the pack, in write order. A torn record at the end is left out.
+     *
+     * @return the entries.
+     * @throws IOException if the pack cannot be read.
+     */
+    public synchronized List<Entry> entries() throws IOException {
+        return scan(pack, 0);
+    }
+
+    /**
+     * Flushes the pack and the index to disk and closes them.
+     *
+     * @throws IOException if flushing fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!pack.isOpen()) {
+            return;
+        }
+        if (!readOnly) {
+            pack.force(true);
+            ((MappedByteBuffer) index).force();
+        }
+        pack.close();
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+    }
+
+    /**
+     * Deletes the index of a pack and builds a new one by scanning the pack.
+     *
+     * @param packPath the pack file.
+     * @throws IOException if the files cannot be read or written.
+     */
+    public static void rebuildIndex(Path packPath) throws IOException {
+        Files.deleteIfExists(indexPathFor(packPath));
+        new ArtifactPack(packPath, 4096).close();
+    }
+
+    private static Path indexPathFor(Path packPath) {
+        String name = packPath.getFileName().toString();
+        String base = name.endsWith(".pack") ? name.substring(0, name.length() - ".pack".length()) : name;
+        return packPath.resolveSibling(base + ".idx");
+    }
+
+    // ----- index -----
+
+    /**
+     * Maps an existing index if its header is valid and it does not cover more than the pack holds (e.g. a
+     * pack that was cut). The header is checked before mapping, so an unusable index file is never mapped
+     * and can be replaced.
+     */
+    private boolean openIndex() throws IOException {
+        if (!Files.exists(indexPath) || Files.size(indexPath) < INDEX_HEADER) {
+            return false;
+        }
+        indexChannel = readOnly
+                ? FileChannel.open(indexPath, StandardOpenOption.READ)
+                : FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+        readFully(indexChannel, header, 0);
+        int slotCount = header.getInt(4);
+        if (header.getInt(0) != INDEX_MAGIC || slotCount <= 0 || Integer.bitCount(slotCount) != 1
+                || indexChannel.size() != INDEX_HEADER + (long) slotCount * SLOT_SIZE
+                || header.getLong(INDEX_PACK_END) > pack.size()) {
+            indexChannel.close();
+            indexChannel = null;
+            return false;
+        }
+        index = indexChannel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                0, indexChannel.size());
+        slots = slotCount;
+        entries = header.getInt(8);
+        return true;
+    }
+
+    /**
+     * Starts an empty index: a mapped file, or a heap buffer for a read-only pack.
+     */
+    private void createIndex(int slotCount) throws IOException {
+        long size = INDEX_HEADER + (long) slotCount * SLOT_SIZE;
+        if (readOnly) {
+            indexChannel = null;
+            index = ByteBuffer.allocate((int) size);
+        } else {
+            // Truncated rather than deleted: deleting a file that is still mapped fails on Windows
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel.truncate(0);
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, slotCount);
+        index.putInt(8, 0);
+        index.putLong(INDEX_PACK_END, 0);
+        slots = slotCount;
+        entries = 0;
+    }
+
+    /**
+     * Indexes every complete record from a record boundary on.
+     *
+     * @return the end of the last complete record.
+     */
+    private long indexRecords(long from) throws IOException {
+        long end = from;
+        for (Entry entry : scan(pack, from)) {
+            long recordOffset = recordOffsetOf(entry);
+            put(entry.test, recordOffset);
+            put(entry.test + "/" + entry.step, recordOffset);
+            end = entry.dataOffset + entry.length;
+        }
+        return end;
+    }
+
+    /**
+     * Looks up a key. Slots store only the key hash, so a match is confirmed by the caller against
+     * the record in the pack; colliding hashes are resolved by the newest write winning.
+     */
+    private long get(String key) {
+        long hash = hash(key);
+        for (int i = 0, slot = (int) (hash & (slots - 1)); i < slots; i++, slot = (slot + 1) & (slots - 1)) {
+            int position = INDEX_HEADER + slot * SLOT_SIZE;
+            long stored = index.getLong(position);
+            if (stored == 0) {
+                return -1;
+            }
+            if (stored == hash) {
+                return index.getLong(position + 8);
+            }
+        }
+        return -1;
+    }
+
+    private void put(String key, long recordOffset) throws IOException {
+        if ((entries + 1) * 10L > slots * 7L) {
+            grow();
+        }
+        long hash = hash(key);
+        int slot = (int) (hash & (slots - 1));
+        while (true) {
+            int position = INDEX_HEADER + slot * SLOT_SIZE;
+            long stored = index.getLong(position);
+            if (stored == 0 || stored == hash) {
+                index.putLong(position + 8, recordOffset);
+                index.putLong(position, hash);
+                if (stored == 0) {
+                    index.putInt(8, ++entries);
+                }
+                return;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    /**
+     * Doubles the slot count in place. The index file is extended and remapped rather than replaced, as a
+     * mapped file cannot be deleted on Windows. Until the rehash is done the index claims to cover nothing,
+     * so a crash in between makes the next open rebuild it.
+     */
+    private void grow() throws IOException {
+        int oldSlots = slots;
+        long[] hashes = new long[oldSlots];
+        long[] offsets = new long[oldSlots];
+        for (int slot = 0; slot < oldSlots; slot++) {
+            hashes[slot] = index.getLong(INDEX_HEADER + slot * SLOT_SIZE);
+            offsets[slot] = index.getLong(INDEX_HEADER + slot * SLOT_SIZE + 8);
+        }
+        long packEnd = index.getLong(INDEX_PACK_END);
+        index.putLong(INDEX_PACK_END, 0);
+
+        slots = oldSlots * 2;
+        long size = INDEX_HEADER + (long) slots * SLOT_SIZE;
+        if (readOnly) {
+            ByteBuffer larger = ByteBuffer.allocate((int) size);
+            for (int i = 0; i < INDEX_HEADER; i++) {
+                larger.put(i, index.get(i));
+            }
+            index = larger;
+        } else {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (int slot = 0; slot < oldSlots; slot++) {
+                index.putLong(INDEX_HEADER + slot * SLOT_SIZE, 0);
+                index.putLong(INDEX_HEADER + slot * SLOT_SIZE + 8, 0);
+            }
+        }
+        index.putInt(4, slots);
+
+        entries = 0;
+        for (int slot = 0; slot < oldSlots; slot++) {
+            if (hashes[slot] != 0) {
+                int target = (int) (hashes[slot] & (slots - 1));
+                while (index.getLong(INDEX_HEADER + target * SLOT_SIZE) != 0) {
+                    target = (target + 1) & (slots - 1);
+                }
+                index.putLong(INDEX_HEADER + target * SLOT_SIZE + 8, offsets[slot]);
+                index.putLong(INDEX_HEADER + target * SLOT_SIZE, hashes[slot]);
+                entries++;
+            }
+        }
+        index.putInt(8, entries);
+        index.putLong(INDEX_PACK_END, packEnd);
+    }
+
+    /**
+     * 64-bit FNV-1a; 0 marks an empty slot, so it is never returned.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // ----- pack records -----
+
+    private static long recordOffsetOf(Entry entry) {
+        int testLength = entry.test.getBytes(StandardCharsets.UTF_8).length;
+        int stepLength = entry.step.getBytes(StandardCharsets.UTF_8).length;
+        return entry.dataOffset - (4 + 8 + 4 + testLength + 4 + stepLength + 8 + 8);
+    }
+
+    private static Entry readEntry(FileChannel channel, long offset) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(16);
+        readFully(channel, fixed, offset);
+        fixed.flip();
+        if (fixed.getInt() != RECORD_MAGIC) {
+            throw new IOException("Corrupt pack record at offset " + offset);
+        }
+        long previous = fixed.getLong();
+        int testLength = fixed.getInt();
+        String test = readString(channel, offset + 16, testLength);
+
+        long position = offset + 16 + testLength;
+        ByteBuffer stepLength = ByteBuffer.allocate(4);
+        readFully(channel, stepLength, position);
+        stepLength.flip();
+        int stepBytes = stepLength.getInt();
+        String step = readString(channel, position + 4, stepBytes);
+
+        position += 4 + stepBytes;
+        ByteBuffer tail = ByteBuffer.allocate(16);
+        readFully(channel, tail, position);
+        tail.flip();
+        long capturedAt = tail.getLong();
+        long length = tail.getLong();
+        return new Entry(test, step, capturedAt, position + 16, length, previous);
+    }
+
+    /**
+     * Reads every complete record from a record boundary on; a torn record at the end (e.g. after a crash)
+     * is ignored.
+     */
+    private static List<Entry> scan(FileChannel channel, long from) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        long offset = from;
+        long size = channel.size();
+        while (offset < size) {
+            Entry entry;
+            try {
+                entry = readEntry(channel, offset);
+            } catch (IOException e) {
+                break;
+            }
+            if (entry.dataOffset + entry.length > size) {
+                break;
+            }
+            result.add(entry);
+            offset = entry.dataOffset + entry.length;
+        }
+        return result;
+    }
+
+    private static String readString(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(channel, bytes, offset);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of pack at offset " + (offset + buffer.position()));
+            }
+        }
+    }
+
+    // ----- command line -----
+
+    /**
+     * Lists or extracts the artifacts of a pack.
+     * <p>
+     * {@code list <pack> [test]} prints the entries; {@code extract <pack> <dir> [test]} writes each
+     * entry to {@code <dir>/<test>/<step>}.
+     *
+     * @param args the command line arguments.
+     * @throws Exception if the pack cannot be read or the files cannot be written.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !("list".equals(args[0]) || "extract".equals(args[0]) && args.length >= 3)) {
+            System.out.println("Usage: ArtifactPack list <pack> [test]");
+            System.out.println("       ArtifactPack extract <pack> <dir> [test]");
+            return;
+        }
+        boolean extract = "extract".equals(args[0]);
+        String test = args.length > (extract ? 3 : 2) ? args[extract ? 3 : 2] : null;
+        try (ArtifactPack pack = openReadOnly(Paths.get(args[1]))) {
+            List<Entry> selected = test == null ? pack.entries() : pack.entries(test);
+            for (Entry entry : selected) {
+                if (extract) {
+                    Path target = Paths.get(args[2]).resolve(safeName(entry.test)).resolve(safeName(entry.step));
+                    Files.createDirectories(target.getParent());
+                    Files.write(target, pack.read(entry));
+                    System.out.println("Extracted " + target);
+                } else {
+                    System.out.println(entry);
+                }
+            }
+        }
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[\\\\/:*?\"<>|]", "_");
+    }
+}
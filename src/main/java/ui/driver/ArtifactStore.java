@@ -0,0 +1,274 @@
+package ui.driver;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import properties.PropertiesFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Content-addressed store for capture artifacts.
+ * <p>
+ * Each distinct artifact is written once, as {@code objects/<first 2 hex>/<sha256>.<ext>} under
+ * {@code artifactStore.path}. Capturing the same image again only appends a line to
+ * {@code captures.log}, which maps every capture (time, name) to the object holding its content.
+ * <p>
+ * With {@code artifactStore.nearDuplicateDistance} above 0, images are also compared by a 64-bit
+ * difference hash (dHash). An image within that Hamming distance of a recently stored one is recorded
+ * as a capture of the earlier object and not written at all, which drops frames that differ only by
+ * a blinking cursor or a spinner.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     ArtifactStore.StoredArtifact stored = ArtifactStore.getInstance().store("TestCase1", pngBytes, "png");
+ * </pre>
+ */
+public class ArtifactStore {
+
+    static String projectPath = System.getProperty("user.dir") + "/";
+    private static final String MANIFEST = "captures.log";
+
+    private static ArtifactStore instance;
+
+    private final Path root;
+    private final int nearDuplicateDistance;
+    private final int recentLimit;
+    private final ArrayDeque<Long> recentImages = new ArrayDeque<>();
+    private final ArrayDeque<String> recentHashes = new ArrayDeque<>();
+
+    /**
+     * Result of storing one artifact.
+     */
+    public static final class StoredArtifact {
+        private final String hash;
+        private final Path path;
+        private final boolean written;
+
+        StoredArtifact(String hash, Path path, boolean written) {
+            this.hash = hash;
+            this.path = path;
+            this.written = written;
+        }
+
+        /**
+         * @return the SHA-256 of the stored object.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the object file holding the content.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return true if new content was written; false if an identical or near-identical object existed.
+         */
+        public boolean isWritten() {
+            return written;
+        }
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param root                  the store directory.
+     * @param nearDuplicateDistance the maximum dHash Hamming distance treated as the same image; 0 disables it.
+     * @param recentLimit           how many recent image hashes are compared against.
+     */
+    public ArtifactStore(Path root, int nearDuplicateDistance, int recentLimit) {
+        this.root = root;
+        this.nearDuplicateDistance = nearDuplicateDistance;
+        this.recentLimit = Math.max(1, recentLimit);
+        if (nearDuplicateDistance > 0) {
+            loadRecentImages();
+        }
+    }
+
+    /**
+     * Returns the shared store configured from configs.properties ({@code artifactStore.path},
+     * {@code artifactStore.nearDuplicateDistance} and {@code artifactStore.recentImages}).
+     *
+     * @return the JVM-wide ArtifactStore instance.
+     */
+    public static synchronized ArtifactStore getInstance() {
+        if (instance == null) {
+            instance = new ArtifactStore(
+                    Paths.get(projectPath + PropertiesFile.getPropValue("artifactStore.path", "ExportData/Artifacts")),
+                    Integer.parseInt(PropertiesFile.getPropValue("artifactStore.nearDuplicateDistance", "0")),
+                    Integer.parseInt(PropertiesFile.getPropValue("artifactStore.recentImages", "256")));
+        }
+        return instance;
+    }
+
+    /**
+     * Stores an artifact unless identical (or, for images, near-identical) content is already stored.
+     *
+     * @param name      the capture name recorded in the manifest, e.g. the test name.
+     * @param content   the artifact bytes.
+     * @param extension the file extension without dot, e.g. "png".
+     * @return where the content lives and whether it was written.
+     * @throws IOException if the object or the manifest cannot be written.
+     */
+    public StoredArtifact store(String name, byte[] content, String extension) throws IOException {
+        String hash = DigestUtils.sha256Hex(content);
+        Path object = objectPath(hash, extension);
+        Long dHash = null;
+        boolean image = nearDuplicateDistance > 0 && isImage(extension);
+
+        if (!Files.exists(object)) {
+            if (image) {
+                dHash = differenceHash(content);
+                String similar = dHash == null ? null : findSimilar(dHash);
+                if (similar != null) {
+                    Path similarObject = objectPath(similar, extension);
+                    if (Files.exists(similarObject)) {
+                        appendManifest(name, similar, dHash);
+                        return new StoredArtifact(similar, similarObject, false);
+                    }
+                }
+            }
+            writeObject(object, content);
+            if (dHash != null) {
+                remember(hash, dHash);
+            }
+            appendManifest(name, hash, dHash);
+            return new StoredArtifact(hash, object, true);
+        }
+
+        appendManifest(name, hash, dHash);
+        return new StoredArtifact(hash, object, false);
+    }
+
+    /**
+     * Gets the object file for a content hash.
+     *
+     * @param hash      the SHA-256 hex string.
+     * @param extension the file extension without dot.
+     * @return the object path (which may not exist).
+     */
+    public Path objectPath(String hash, String extension) {
+        return root.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    /**
+     * Writes through a temporary file and an atomic rename, so readers never see a partial object and
+     * two writers of the same content do not interfere.
+     */
+    private void writeObject(Path object, byte[] content) throws IOException {
+        Files.createDirectories(object.getParent());
+        Path temp = Files.createTempFile(object.getParent(), "obj", ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, object);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Written concurrently with the same content
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized void appendManifest(String name, String hash, Long dHash) throws IOException {
+        Files.createDirectories(root);
+        String line = Instant.now() + "\t" + name.replace('\t', ' ') + "\t" + hash
+                + "\t" + (dHash == null ? "-" : Long.toHexString(dHash)) + System.lineSeparator();
+        try (Writer writer = Files.newBufferedWriter(root.resolve(MANIFEST), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+        }
+    }
+
+    private synchronized String findSimilar(long dHash) {
+        Iterator<Long> images = recentImages.iterator();
+        Iterator<String> hashes = recentHashes.iterator();
+        while (images.hasNext()) {
+            long candidate = images.next();
+            String hash = hashes.next();
+            if (Long.bitCount(candidate ^ dHash) <= nearDuplicateDistance) {
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void remember(String hash, long dHash) {
+        if (recentImages.size() == recentLimit) {
+            recentImages.pollLast();
+            recentHashes.pollLast();
+        }
+        recentImages.addFirst(dHash);
+        recentHashes.addFirst(hash);
+    }
+
+    /**
+     * Seeds the near-duplicate check with the most recent images of earlier runs.
+     */
+    private void loadRecentImages() {
+        Path manifest = root.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            for (int i = Math.max(0, lines.size() - recentLimit); i < lines.size(); i++) {
+                String[] fields = lines.get(i).split("\t");
+                if (fields.length == 4 && !"-".equals(fields[3])) {
+                    remember(fields[2], Long.parseUnsignedLong(fields[3], 16));
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Could not read artifact manifest: " + e.getMessage());
+        }
+    }
+
+    private static boolean isImage(String extension) {
+        return "png".equalsIgnoreCase(extension) || "jpg".equalsIgnoreCase(extension) || "jpeg".equalsIgnoreCase(extension);
+    }
+
+    /**
+     * Computes a 64-bit difference hash: the image is reduced to 9x8 grayscale and each bit records
+     * whether a pixel is brighter than its right neighbour.
+     *
+     * @param image the encoded image.
+     * @return the hash, or null if the image cannot be decoded.
+     */
+    static Long differenceHash(byte[] image) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+        if (decoded == null) {
+            return null;
+        }
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        small.getGraphics().drawImage(decoded, 0, 0, 9, 8, null);
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = small.getRaster().getSample(x, y, 0);
+                int right = small.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+}
@@ -3,14 +3,25 @@ package ui.driver;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.io.FileHandler;
 import org.testng.Reporter;
 
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.monte.media.Format;
 import org.monte.media.FormatKeys.MediaType;
@@ -28,34 +39,155 @@ import static org.monte.media.VideoFormatKeys.*;
 public class CaptureHelpers extends ScreenRecorder {
 
     static String projectPath = System.getProperty("user.dir") + "/";
-    private static SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy HH-mm-ss");
+    // DateTimeFormatter is immutable and can be shared between test threads
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH-mm-ss-SSS");
 
     public static ScreenRecorder screenRecorder;
     public String name;
 
     /**
      * Captures a screenshot of the current browser window and saves it to the configured path.
+     * <p>
+     * Only the screenshot round trip to the browser runs on the calling thread; the PNG bytes are
+     * written to {@code exportCapturePath} by a background writer. Pending writes are flushed when
+     * the JVM exits, or explicitly with {@link #flushScreenshots(long)}. With {@code captureStorage=cas}
+     * the image goes to the content-addressed {@link ArtifactStore} instead, so identical screenshots
+     * are stored once; with {@code captureStorage=pack} it is appended to the run's {@link ArtifactPack}.
      *
      * @param driver     the WebDriver instance in use.
      * @param screenName the name to be used as a prefix for the screenshot file.
+     * @return a future completing with the written file, or {@code null} if the screenshot could not be taken.
      */
-    public static void captureScreenshot(WebDriver driver, String screenName) {
-        PropertiesFile.setPropertiesFile();
+    public static Future<Path> captureScreenshot(WebDriver driver, String screenName) {
         try {
             Reporter.log("Driver for Screenshot: " + driver);
-            TakesScreenshot ts = (TakesScreenshot) driver;
-            File source = ts.getScreenshotAs(OutputType.FILE);
-            File theDir = new File(projectPath + PropertiesFile.getPropValue("exportCapturePath"));
-            if (!theDir.exists()) {
-                theDir.mkdirs();
-            }
-            FileHandler.copy(source, new File(projectPath
-                    + PropertiesFile.getPropValue("exportCapturePath") + "/"
-                    + screenName + "_" + dateFormat.format(new Date()) + ".png"));
-            System.out.println("Screenshot taken: " + screenName);
-            Reporter.log("Screenshot taken current URL: " + driver.getCurrentUrl(), true);
+            byte[] png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+            String fileName = screenName + "_" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + ".png";
+            Future<Path> written = ScreenshotWriter.INSTANCE.submit(screenName, fileName, png);
+            Reporter.log("Screenshot taken: " + fileName, true);
+            return written;
         } catch (Exception e) {
             System.out.println("Exception while taking screenshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Blocks until every screenshot submitted so far has been written.
+     *
+     * @param timeoutSeconds the maximum time to wait.
+     * @return true if all pending screenshots were written in time; false otherwise.
+     */
+    public static boolean flushScreenshots(long timeoutSeconds) {
+        return ScreenshotWriter.INSTANCE.flush(timeoutSeconds);
+    }
+
+    /**
+     * Background writer for screenshot files.
+     * <p>
+     * A single thread writes the files in submission order, so a flush marker submitted last completes
+     * after every earlier write. The queue is bounded by {@code screenshot.queueSize}; when it is full the
+     * submitting thread waits for a free slot instead of piling up images in memory. Writing on the caller
+     * instead would let a flush marker overtake the writes still queued.
+     */
+    private static final class ScreenshotWriter {
+
+        static final ScreenshotWriter INSTANCE = new ScreenshotWriter();
+
+        private final Path captureDir;
+        private final long shutdownFlushSeconds;
+        private final String storage;
+        private final ThreadPoolExecutor executor;
+        private volatile boolean dirCreated;
+
+        private ScreenshotWriter() {
+            captureDir = Paths.get(projectPath + PropertiesFile.getPropValue("exportCapturePath", "ExportData/Images"));
+            storage = PropertiesFile.getPropValue("captureStorage", "files").toLowerCase();
+            shutdownFlushSeconds = Long.parseLong(PropertiesFile.getPropValue("screenshot.flushTimeout", "30"));
+            int queueSize = Integer.parseInt(PropertiesFile.getPropValue("screenshot.queueSize", "32"));
+            executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "screenshot-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    ScreenshotWriter::waitForSlot);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "screenshot-writer-shutdown"));
+        }
+
+        Future<Path> submit(String screenName, String fileName, byte[] png) {
+            CompletableFuture<Path> result = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    result.complete(write(screenName, fileName, png));
+                } catch (Throwable e) {
+                    System.out.println("Could not write screenshot " + fileName + ": " + e);
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Rejection handler: blocks until the queue has room, keeping the single-writer order.
+         */
+        private static void waitForSlot(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Screenshot writer is shut down");
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the screenshot writer", e);
+            }
+        }
+
+        boolean flush(long timeoutSeconds) {
+            try {
+                executor.submit(() -> { }).get(timeoutSeconds, TimeUnit.SECONDS);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException | TimeoutException e) {
+                return false;
+            } catch (RejectedExecutionException e) {
+                // Already shut down, so every write has finished
+                return true;
+            }
+        }
+
+        private Path write(String screenName, String fileName, byte[] png) throws IOException {
+            if ("cas".equals(storage)) {
+                String name = fileName.substring(0, fileName.length() - ".png".length());
+                return ArtifactStore.getInstance().store(name, png, "png").getPath();
+            }
+            if ("pack".equals(storage)) {
+                ArtifactPack pack = ArtifactPack.forCurrentRun();
+                pack.append(screenName, fileName, png);
+                return pack.getPath();
+            }
+            if (!dirCreated) {
+                Files.createDirectories(captureDir);
+                dirCreated = true;
+            }
+            Path target = captureDir.resolve(fileName);
+            Files.write(target, png, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return target;
+        }
+
+        private void shutdown() {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(shutdownFlushSeconds, TimeUnit.SECONDS)) {
+                    System.out.println("Screenshot writer did not finish within " + shutdownFlushSeconds + "s, "
+                            + executor.getQueue().size() + " screenshot(s) dropped");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -96,7 +228,7 @@ public class CaptureHelpers extends ScreenRecorder {
         }
 
         return new File(movieFolder,
-                name + "-" + dateFormat.format(new Date()) + "." + Registry.getInstance().getExtension(fileFormat));
+                name + "-" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + "." + Registry.getInstance().getExtension(fileFormat));
     }
 
     /**
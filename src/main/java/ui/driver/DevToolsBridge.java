@@ -0,0 +1,99 @@
+package ui.driver;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Shares one Chrome DevTools Protocol session per WebDriver between the helpers that need it.
+ * <p>
+ * Commands and events are addressed by their raw CDP names (e.g. "Network.enable") so the helpers
+ * do not depend on a specific versioned devtools module and keep working across browser updates.
+ */
+public class DevToolsBridge {
+
+    private static final Map<WebDriver, DevToolsBridge> bridges = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final DevTools devTools;
+    private final Set<String> enabledDomains = ConcurrentHashMap.newKeySet();
+
+    private DevToolsBridge(DevTools devTools) {
+        this.devTools = devTools;
+        this.devTools.createSessionIfThereIsNotOne();
+    }
+
+    /**
+     * Returns the bridge for the given driver, opening the DevTools session on first use.
+     *
+     * @param driver the WebDriver instance in use.
+     * @return the bridge, or empty if the browser does not expose DevTools (e.g. Firefox).
+     */
+    public static Optional<DevToolsBridge> forDriver(WebDriver driver) {
+        if (!(driver instanceof HasDevTools)) {
+            return Optional.empty();
+        }
+        synchronized (bridges) {
+            DevToolsBridge bridge = bridges.get(driver);
+            if (bridge == null) {
+                try {
+                    Optional<DevTools> devTools = ((HasDevTools) driver).maybeGetDevTools();
+                    if (!devTools.isPresent()) {
+                        return Optional.empty();
+                    }
+                    bridge = new DevToolsBridge(devTools.get());
+                } catch (Exception e) {
+                    System.out.println("DevTools session not available: " + e.getMessage());
+                    return Optional.empty();
+                }
+                bridges.put(driver, bridge);
+            }
+            return Optional.of(bridge);
+        }
+    }
+
+    /**
+     * Sends a CDP command and waits for its result.
+     *
+     * @param method the CDP method name, e.g. "Network.setBlockedURLs".
+     * @param params the command parameters.
+     * @return the command result as a map (empty for commands without a result).
+     */
+    public Map<String, Object> send(String method, Map<String, Object> params) {
+        Map<String, Object> result = devTools.send(new Command<Map<String, Object>>(method, params,
+                input -> input.read(Json.MAP_TYPE)));
+        return result == null ? Collections.<String, Object>emptyMap() : result;
+    }
+
+    /**
+     * Enables a CDP domain once per session, e.g. "Network" or "Page".
+     *
+     * @param domain the domain name.
+     */
+    public void enable(String domain) {
+        if (enabledDomains.add(domain)) {
+            send(domain + ".enable", Collections.<String, Object>emptyMap());
+        }
+    }
+
+    /**
+     * Registers a listener for a CDP event. The listener runs on the DevTools connection thread,
+     * so it must be quick and must not call back into WebDriver.
+     *
+     * @param event    the CDP event name, e.g. "Network.loadingFinished".
+     * @param listener receives the event parameters.
+     */
+    public void addListener(String event, Consumer<Map<String, Object>> listener) {
+        devTools.addListener(new Event<Map<String, Object>>(event, input -> input.read(Json.MAP_TYPE)), listener);
+    }
+}
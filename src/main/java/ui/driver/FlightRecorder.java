@@ -0,0 +1,194 @@
+package ui.driver;
+
+import properties.PropertiesFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failure-only desktop recorder that keeps the last seconds of the screen in memory.
+ * <p>
+ * While at least one test is running, the desktop is sampled at {@code flightRecorder.fps}, scaled by
+ * {@code flightRecorder.scale} and kept as JPEG in a {@link FrameRingBuffer} holding
+ * {@code flightRecorder.seconds} of video. Passing tests only cost the sampling; nothing is encoded to
+ * video or written to disk. When a test fails, {@link #dump(String)} writes the buffered frames as an
+ * MJPEG AVI to {@code exportVideoPath}.
+ * <p>
+ * The recorder is disabled unless {@code flightRecorder.enabled=true}, and always on headless machines.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     FlightRecorder.getInstance().begin();
+ *     ...
+ *     FlightRecorder.getInstance().dump("TestCase1");   // only when the test failed
+ *     FlightRecorder.getInstance().end();
+ * </pre>
+ */
+public class FlightRecorder {
+
+    static String projectPath = System.getProperty("user.dir") + "/";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH-mm-ss-SSS");
+
+    private static FlightRecorder instance;
+
+    private final boolean enabled;
+    private final int fps;
+    private final double scale;
+    private final float quality;
+    private final Path videoDir;
+    private final FrameRingBuffer buffer;
+    private final ScheduledExecutorService sampler;
+    private ScheduledFuture<?> sampling;
+    private Robot robot;
+    private int activeTests;
+
+    private FlightRecorder() {
+        boolean configured = Boolean.parseBoolean(PropertiesFile.getPropValue("flightRecorder.enabled", "false"));
+        if (configured && GraphicsEnvironment.isHeadless()) {
+            System.out.println("Flight recorder disabled: no display available");
+        }
+        enabled = configured && !GraphicsEnvironment.isHeadless();
+        fps = Math.max(1, Integer.parseInt(PropertiesFile.getPropValue("flightRecorder.fps", "5")));
+        scale = Double.parseDouble(PropertiesFile.getPropValue("flightRecorder.scale", "0.5"));
+        quality = Float.parseFloat(PropertiesFile.getPropValue("flightRecorder.quality", "0.6"));
+        int seconds = Integer.parseInt(PropertiesFile.getPropValue("flightRecorder.seconds", "30"));
+        videoDir = Paths.get(projectPath + PropertiesFile.getPropValue("exportVideoPath", "ExportData/Videos"));
+        buffer = new FrameRingBuffer(Math.max(1, seconds * fps));
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flight-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the JVM-wide recorder configured from configs.properties.
+     *
+     * @return the FlightRecorder instance.
+     */
+    public static synchronized FlightRecorder getInstance() {
+        if (instance == null) {
+            instance = new FlightRecorder();
+        }
+        return instance;
+    }
+
+    /**
+     * Whether the recorder captures frames at all.
+     *
+     * @return true if enabled in the configuration and a display is available.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks the start of a test. Sampling starts with the first running test.
+     */
+    public synchronized void begin() {
+        if (!enabled) {
+            return;
+        }
+        if (activeTests++ == 0) {
+            try {
+                if (robot == null) {
+                    robot = new Robot();
+                }
+                sampling = sampler.scheduleAtFixedRate(this::sample, 0, 1000L / fps, TimeUnit.MILLISECONDS);
+            } catch (AWTException e) {
+                System.out.println("Flight recorder could not access the screen: " + e.getMessage());
+                activeTests = 0;
+            }
+        }
+    }
+
+    /**
+     * Marks the end of a test. Sampling stops and the buffer is dropped once no test is running.
+     */
+    public synchronized void end() {
+        if (!enabled || activeTests == 0) {
+            return;
+        }
+        if (--activeTests == 0) {
+            if (sampling != null) {
+                sampling.cancel(false);
+                sampling = null;
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes the buffered seconds of video for a failed test.
+     *
+     * @param testName the name used as the video file prefix.
+     * @return the written file, or null if the recorder is disabled, has no frames or the write failed.
+     */
+    public Path dump(String testName) {
+        if (!enabled) {
+            return null;
+        }
+        Path target = videoDir.resolve(testName + "-" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + ".avi");
+        try {
+            int frames = buffer.writeAvi(target);
+            if (frames == 0) {
+                return null;
+            }
+            System.out.println("Flight recording saved (" + frames + " frames): " + target);
+            return target;
+        } catch (IOException e) {
+            System.out.println("Could not save flight recording for " + testName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void sample() {
+        try {
+            Rectangle screen = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
+            BufferedImage capture = robot.createScreenCapture(screen);
+            int width = Math.max(1, (int) (screen.width * scale));
+            int height = Math.max(1, (int) (screen.height * scale));
+            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = frame.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(capture, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            buffer.add(encodeJpeg(frame), width, height);
+        } catch (Exception e) {
+            System.out.println("Flight recorder frame dropped: " + e.getMessage());
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
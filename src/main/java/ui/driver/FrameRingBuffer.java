@@ -0,0 +1,135 @@
+package ui.driver;
+
+import org.monte.media.avi.AVIOutputStream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory buffer of JPEG video frames that keeps only the most recent ones.
+ * <p>
+ * Frames are stored already compressed, so the memory footprint is a few tens of KB per frame.
+ * Once the buffer is full, adding a frame drops the oldest. Nothing touches the disk until
+ * {@link #writeAvi(Path)} is called.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     FrameRingBuffer buffer = new FrameRingBuffer(150);
+ *     buffer.add(jpegBytes, width, height);
+ *     ...
+ *     buffer.writeAvi(Paths.get("ExportData/Videos/test.avi"));
+ * </pre>
+ */
+public class FrameRingBuffer {
+
+    /**
+     * One compressed frame and the time it was captured.
+     */
+    public static final class Frame {
+        final byte[] jpeg;
+        final int width;
+        final int height;
+        final long capturedNanos;
+
+        Frame(byte[] jpeg, int width, int height, long capturedNanos) {
+            this.jpeg = jpeg;
+            this.width = width;
+            this.height = height;
+            this.capturedNanos = capturedNanos;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Frame> frames;
+
+    /**
+     * Creates a buffer.
+     *
+     * @param capacity the maximum number of frames kept.
+     */
+    public FrameRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Frame buffer capacity must be at least 1, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.frames = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Adds a frame, dropping the oldest one if the buffer is full.
+     *
+     * @param jpeg   the JPEG-encoded frame.
+     * @param width  the frame width in pixels.
+     * @param height the frame height in pixels.
+     */
+    public synchronized void add(byte[] jpeg, int width, int height) {
+        if (frames.size() == capacity) {
+            frames.pollFirst();
+        }
+        frames.addLast(new Frame(jpeg, width, height, System.nanoTime()));
+    }
+
+    /**
+     * Drops every buffered frame.
+     */
+    public synchronized void clear() {
+        frames.clear();
+    }
+
+    /**
+     * Gets the number of buffered frames.
+     *
+     * @return the frame count.
+     */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * Writes the buffered frames as an MJPEG AVI file.
+     * <p>
+     * The frame rate of the file is derived from the capture timestamps, so the video plays back at
+     * roughly real time even when frames were captured slower than requested. Frames whose size differs
+     * from the first frame (e.g. after a window resize) are skipped, since an AVI track has one size.
+     *
+     * @param target the AVI file to write; parent directories are created.
+     * @return the number of frames written; 0 if the buffer was empty and no file was written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int writeAvi(Path target) throws IOException {
+        List<Frame> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(frames);
+        }
+        if (snapshot.isEmpty()) {
+            return 0;
+        }
+
+        Frame first = snapshot.get(0);
+        Frame last = snapshot.get(snapshot.size() - 1);
+        double seconds = (last.capturedNanos - first.capturedNanos) / 1_000_000_000d;
+        long frameRate = seconds > 0 ? Math.max(1, Math.round((snapshot.size() - 1) / seconds)) : 1;
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        AVIOutputStream out = new AVIOutputStream(target.toFile());
+        int written = 0;
+        try {
+            int track = out.addVideoTrack("MJPG", 1, frameRate, first.width, first.height, 24, 1);
+            for (Frame frame : snapshot) {
+                if (frame.width == first.width && frame.height == first.height) {
+                    out.writeSample(track, frame.jpeg, 0, frame.jpeg.length, true);
+                    written++;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        return written;
+    }
+}
@@ -0,0 +1,247 @@
+package ui.driver;
+
+import org.openqa.selenium.WebDriver;
+import properties.PropertiesFile;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks in-flight network requests of a browser through the DevTools Network domain and
+ * reports when the page has gone quiet.
+ * <p>
+ * A page is considered ready when no more than {@code maxInflight} requests are pending and no
+ * request has started or finished for the quiet window. Both values can be tuned per URL pattern
+ * in configs.properties:
+ * <pre>
+ *     networkIdle.quietMs=500
+ *     networkIdle.maxInflight=0
+ *     networkIdle.timeoutMs=30000
+ *     networkIdle.ignore=.*(hotjar|doubleclick|segment)\..*
+ *     networkIdle.rules=learning
+ *     networkIdle.rule.learning.pattern=https://learning\.edx\.org/.*
+ *     networkIdle.rule.learning.quietMs=1000
+ *     networkIdle.rule.learning.maxInflight=2
+ * </pre>
+ * The first rule whose pattern matches the current URL wins; otherwise the defaults apply.
+ * <p>
+ * Requests of a previous document are forgotten when the main frame navigates, and a request that
+ * has been pending for longer than {@code networkIdle.timeoutMs} is dropped, so a request whose end
+ * event was missed cannot hold every later wait until its timeout.
+ */
+public class NetworkIdleMonitor {
+
+    private static final Map<WebDriver, NetworkIdleMonitor> monitors = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Request id → loader id and start time of each pending request. */
+    private final Map<String, PendingRequest> inFlight = new ConcurrentHashMap<>();
+    private final Object activity = new Object();
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    private final IdleRule defaultRule;
+    private final List<IdleRule> rules;
+    private final Duration timeout;
+    private final Pattern ignorePattern;
+
+    private NetworkIdleMonitor(DevToolsBridge bridge) {
+        defaultRule = new IdleRule(null,
+                Long.parseLong(PropertiesFile.getPropValue("networkIdle.quietMs", "500")),
+                Integer.parseInt(PropertiesFile.getPropValue("networkIdle.maxInflight", "0")));
+        timeout = Duration.ofMillis(Long.parseLong(PropertiesFile.getPropValue("networkIdle.timeoutMs", "30000")));
+        String ignore = PropertiesFile.getPropValue("networkIdle.ignore", null);
+        ignorePattern = ignore == null ? null : Pattern.compile(ignore);
+
+        List<IdleRule> configuredRules = new ArrayList<>();
+        for (String name : PropertiesFile.getPropValue("networkIdle.rules", "").split(",")) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            String prefix = "networkIdle.rule." + name.trim() + ".";
+            configuredRules.add(new IdleRule(Pattern.compile(PropertiesFile.getPropValue(prefix + "pattern", ".*")),
+                    Long.parseLong(PropertiesFile.getPropValue(prefix + "quietMs", String.valueOf(defaultRule.quietMs))),
+                    Integer.parseInt(PropertiesFile.getPropValue(prefix + "maxInflight", String.valueOf(defaultRule.maxInflight)))));
+        }
+        rules = Collections.unmodifiableList(configuredRules);
+
+        bridge.addListener("Network.requestWillBeSent", this::onRequestStarted);
+        bridge.addListener("Network.loadingFinished", this::onRequestEnded);
+        bridge.addListener("Network.loadingFailed", this::onRequestEnded);
+        bridge.addListener("Page.frameNavigated", this::onFrameNavigated);
+        bridge.enable("Network");
+        bridge.enable("Page");
+    }
+
+    /**
+     * Returns the monitor for the given driver, attaching it on first use.
+     * <p>
+     * Attach the monitor right after the driver is created so requests of the first navigation are seen.
+     *
+     * @param driver the WebDriver instance in use.
+     * @return the monitor, or empty if the browser does not expose DevTools.
+     */
+    public static Optional<NetworkIdleMonitor> forDriver(WebDriver driver) {
+        synchronized (monitors) {
+            NetworkIdleMonitor monitor = monitors.get(driver);
+            if (monitor == null) {
+                Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+                if (!bridge.isPresent()) {
+                    return Optional.empty();
+                }
+                try {
+                    monitor = new NetworkIdleMonitor(bridge.get());
+                } catch (Exception e) {
+                    System.out.println("Network idle monitor not available: " + e.getMessage());
+                    return Optional.empty();
+                }
+                monitors.put(driver, monitor);
+            }
+            return Optional.of(monitor);
+        }
+    }
+
+    /**
+     * Waits until the network is idle according to the rule matching the given URL.
+     *
+     * @param url the URL of the page being loaded, used to select the idle rule.
+     * @return true if the network went idle within {@code networkIdle.timeoutMs}; false otherwise.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public boolean awaitIdle(String url) throws InterruptedException {
+        IdleRule rule = ruleFor(url);
+        return awaitIdle(Duration.ofMillis(rule.quietMs), rule.maxInflight, timeout);
+    }
+
+    /**
+     * Waits until at most {@code maxInflight} requests are pending and the network has been quiet
+     * for {@code quietWindow}. Wakes up on every network event instead of polling.
+     *
+     * @param quietWindow how long no request may start or finish.
+     * @param maxInflight how many long-lived requests may stay pending.
+     * @param timeout     the maximum time to wait.
+     * @return true if the network went idle within the timeout; false otherwise.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public boolean awaitIdle(Duration quietWindow, int maxInflight, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long quietNanos = quietWindow.toNanos();
+        synchronized (activity) {
+            while (true) {
+                long now = System.nanoTime();
+                dropStale(now);
+                long quietFor = now - lastActivityNanos;
+                if (inFlight.size() <= maxInflight && quietFor >= quietNanos) {
+                    return true;
+                }
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    return false;
+                }
+                // While busy, wake up at least once a second so stale requests get dropped
+                long waitNanos = inFlight.size() <= maxInflight
+                        ? Math.min(quietNanos - quietFor, remaining)
+                        : Math.min(1_000_000_000L, remaining);
+                activity.wait(Math.max(1, waitNanos / 1_000_000));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of requests currently in flight.
+     *
+     * @return the pending request count.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private IdleRule ruleFor(String url) {
+        if (url != null) {
+            for (IdleRule rule : rules) {
+                if (rule.pattern.matcher(url).matches()) {
+                    return rule;
+                }
+            }
+        }
+        return defaultRule;
+    }
+
+    private void onRequestStarted(Map<String, Object> event) {
+        Object type = event.get("type");
+        if ("WebSocket".equals(type) || "EventSource".equals(type)) {
+            return;
+        }
+        Object request = event.get("request");
+        if (ignorePattern != null && request instanceof Map) {
+            Object url = ((Map<?, ?>) request).get("url");
+            if (url != null && ignorePattern.matcher(url.toString()).matches()) {
+                return;
+            }
+        }
+        // Redirects reuse the request id, so adding it again is a no-op
+        inFlight.putIfAbsent(String.valueOf(event.get("requestId")),
+                new PendingRequest(event.get("loaderId"), System.nanoTime()));
+        touch();
+    }
+
+    private void dropStale(long now) {
+        long maxAge = timeout.toNanos();
+        inFlight.values().removeIf(request -> now - request.startNanos > maxAge);
+    }
+
+    private void onFrameNavigated(Map<String, Object> event) {
+        Object frame = event.get("frame");
+        if (!(frame instanceof Map) || ((Map<?, ?>) frame).get("parentId") != null) {
+            return;
+        }
+        // A new main document: whatever the old one still had pending no longer matters
+        Object loaderId = ((Map<?, ?>) frame).get("loaderId");
+        if (loaderId != null && inFlight.values().removeIf(request -> !loaderId.equals(request.loaderId))) {
+            touch();
+        }
+    }
+
+    private void onRequestEnded(Map<String, Object> event) {
+        if (inFlight.remove(String.valueOf(event.get("requestId"))) != null) {
+            touch();
+        }
+    }
+
+    private void touch() {
+        synchronized (activity) {
+            lastActivityNanos = System.nanoTime();
+            activity.notifyAll();
+        }
+    }
+
+    private static final class PendingRequest {
+        private final Object loaderId;
+        private final long startNanos;
+
+        private PendingRequest(Object loaderId, long startNanos) {
+            this.loaderId = loaderId;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * Quiet window and in-flight tolerance applied to URLs matching a pattern.
+     */
+    private static final class IdleRule {
+        private final Pattern pattern;
+        private final long quietMs;
+        private final int maxInflight;
+
+        private IdleRule(Pattern pattern, long quietMs, int maxInflight) {
+            this.pattern = pattern;
+            this.quietMs = quietMs;
+            this.maxInflight = maxInflight;
+        }
+    }
+}
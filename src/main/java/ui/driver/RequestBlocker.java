@@ -0,0 +1,224 @@
+package ui.driver;
+
+import org.openqa.selenium.WebDriver;
+import properties.PropertiesFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Blocks resource types and URL patterns the scraper does not need, using DevTools network interception.
+ * <p>
+ * Rules are grouped in run profiles in configs.properties; {@code blocking.profile} selects the active one
+ * ({@code none} disables blocking):
+ * <pre>
+ *     blocking.profile=scrape
+ *     blocking.scrape.resourceTypes=Image,Font,Media
+ *     blocking.scrape.deny=*google-analytics.com*,*doubleclick.net*
+ *     blocking.scrape.allow=*edx.org/static/*
+ * </pre>
+ * URLs matching {@code deny} are always blocked. Requests of a listed resource type are blocked unless
+ * their URL matches {@code allow}. Patterns use {@code *} as wildcard. Only the listed resource types are
+ * paused by the browser, so other requests are not slowed down by the interception.
+ */
+public class RequestBlocker {
+
+    private static final Map<WebDriver, RequestBlocker> blockers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final DevToolsBridge bridge;
+    private final List<Pattern> allowPatterns = new ArrayList<>();
+    private final AtomicLong blockedRequests = new AtomicLong();
+    private final AtomicLong finishedRequests = new AtomicLong();
+    private final AtomicLong transferredBytes = new AtomicLong();
+
+    private RequestBlocker(DevToolsBridge bridge, String profile) {
+        this.bridge = bridge;
+        String prefix = "blocking." + profile + ".";
+        List<String> resourceTypes = splitList(PropertiesFile.getPropValue(prefix + "resourceTypes", ""));
+        List<String> denyPatterns = splitList(PropertiesFile.getPropValue(prefix + "deny", ""));
+        for (String allow : splitList(PropertiesFile.getPropValue(prefix + "allow", ""))) {
+            allowPatterns.add(wildcardToPattern(allow));
+        }
+
+        bridge.addListener("Network.loadingFinished", event -> {
+            finishedRequests.incrementAndGet();
+            Object length = event.get("encodedDataLength");
+            if (length instanceof Number) {
+                transferredBytes.addAndGet(((Number) length).longValue());
+            }
+        });
+        bridge.addListener("Network.loadingFailed", event -> {
+            // Requests rejected by setBlockedURLs fail with a blockedReason
+            if (event.get("blockedReason") != null) {
+                blockedRequests.incrementAndGet();
+            }
+        });
+        bridge.enable("Network");
+
+        if (!denyPatterns.isEmpty()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("urls", denyPatterns);
+            bridge.send("Network.setBlockedURLs", params);
+        }
+
+        if (!resourceTypes.isEmpty()) {
+            bridge.addListener("Fetch.requestPaused", this::onRequestPaused);
+            List<Map<String, Object>> patterns = new ArrayList<>();
+            for (String resourceType : resourceTypes) {
+                Map<String, Object> pattern = new HashMap<>();
+                pattern.put("urlPattern", "*");
+                pattern.put("resourceType", resourceType);
+                pattern.put("requestStage", "Request");
+                patterns.add(pattern);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("patterns", patterns);
+            bridge.send("Fetch.enable", params);
+        }
+    }
+
+    /**
+     * Installs the blocking profile selected by {@code blocking.profile} on the given driver.
+     *
+     * @param driver the WebDriver instance in use.
+     * @return the installed blocker, or empty if blocking is disabled or the browser has no DevTools.
+     */
+    public static Optional<RequestBlocker> install(WebDriver driver) {
+        String profile = PropertiesFile.getPropValue("blocking.profile", "none");
+        if ("none".equalsIgnoreCase(profile)) {
+            return Optional.empty();
+        }
+        synchronized (blockers) {
+            RequestBlocker blocker = blockers.get(driver);
+            if (blocker == null) {
+                Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+                if (!bridge.isPresent()) {
+                    return Optional.empty();
+                }
+                try {
+                    blocker = new RequestBlocker(bridge.get(), profile);
+                } catch (Exception e) {
+                    System.out.println("Request blocking not available: " + e.getMessage());
+                    return Optional.empty();
+                }
+                blockers.put(driver, blocker);
+                System.out.println("Request blocking profile '" + profile + "' installed.");
+            }
+            return Optional.of(blocker);
+        }
+    }
+
+    /**
+     * Returns the blocker installed on the given driver.
+     *
+     * @param driver the WebDriver instance in use.
+     * @return the blocker, or empty if none was installed.
+     */
+    public static Optional<RequestBlocker> forDriver(WebDriver driver) {
+        return Optional.ofNullable(driver == null ? null : blockers.get(driver));
+    }
+
+    /**
+     * Returns the traffic counters accumulated since the blocker was installed.
+     *
+     * @return a snapshot of the counters.
+     */
+    public TrafficStats getStats() {
+        return new TrafficStats(blockedRequests.get(), finishedRequests.get(), transferredBytes.get());
+    }
+
+    private void onRequestPaused(Map<String, Object> event) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("requestId", event.get("requestId"));
+
+        Object request = event.get("request");
+        String url = request instanceof Map ? String.valueOf(((Map<?, ?>) request).get("url")) : "";
+        for (Pattern allow : allowPatterns) {
+            if (allow.matcher(url).matches()) {
+                bridge.send("Fetch.continueRequest", params);
+                return;
+            }
+        }
+
+        blockedRequests.incrementAndGet();
+        params.put("errorReason", "BlockedByClient");
+        bridge.send("Fetch.failRequest", params);
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : Arrays.asList(value.split(","))) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    private static Pattern wildcardToPattern(String wildcard) {
+        StringBuilder regex = new StringBuilder();
+        String[] parts = wildcard.split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            if (!parts[i].isEmpty()) {
+                regex.append(Pattern.quote(parts[i]));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Immutable snapshot of the traffic counters of one browser.
+     */
+    public static final class TrafficStats {
+        private final long blockedRequests;
+        private final long finishedRequests;
+        private final long transferredBytes;
+
+        public TrafficStats(long blockedRequests, long finishedRequests, long transferredBytes) {
+            this.blockedRequests = blockedRequests;
+            this.finishedRequests = finishedRequests;
+            this.transferredBytes = transferredBytes;
+        }
+
+        public long getBlockedRequests() {
+            return blockedRequests;
+        }
+
+        public long getFinishedRequests() {
+            return finishedRequests;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        /**
+         * Returns the traffic that happened between an earlier snapshot and this one.
+         *
+         * @param earlier the snapshot taken first.
+         * @return the difference of both snapshots.
+         */
+        public TrafficStats minus(TrafficStats earlier) {
+            return new TrafficStats(blockedRequests - earlier.blockedRequests,
+                    finishedRequests - earlier.finishedRequests,
+                    transferredBytes - earlier.transferredBytes);
+        }
+
+        @Override
+        public String toString() {
+            return "blocked=" + blockedRequests + ", loaded=" + finishedRequests
+                    + ", transferred=" + (transferredBytes / 1024) + " KB";
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package ui.driver;
+
+import org.monte.media.avi.AVIOutputStream;
+import org.openqa.selenium.WebDriver;
+import properties.PropertiesFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records one browser session through the DevTools screencast API.
+ * <p>
+ * Unlike the desktop recorder in {@link CaptureHelpers}, the browser itself pushes JPEG frames of its
+ * own viewport, so recording works on headless nodes and parallel tests never see each other's windows.
+ * Each recording writes to its own file on a dedicated thread, either as an MJPEG AVI ({@code avi}) or
+ * as a raw concatenated JPEG stream ({@code mjpeg}).
+ * <p>
+ * Configured from configs.properties: {@code screencast.format}, {@code screencast.fps} (frames are
+ * resampled to this rate), {@code screencast.scale} (fraction of the viewport size),
+ * {@code screencast.quality} (JPEG quality 0-100) and {@code screencast.everyNthFrame}.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     ScreencastRecorder.forDriver(driver).ifPresent(r -&gt; r.start(Paths.get("ExportData/Videos/test.avi")));
+ *     ...
+ *     ScreencastRecorder.forDriver(driver).ifPresent(ScreencastRecorder::stop);
+ * </pre>
+ */
+public class ScreencastRecorder {
+
+    private static final Map<WebDriver, ScreencastRecorder> recorders = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final DevToolsBridge bridge;
+    private final String format;
+    private final int fps;
+    private final double scale;
+    private final int quality;
+    private final int everyNthFrame;
+    private volatile Recording current;
+
+    private ScreencastRecorder(DevToolsBridge bridge) {
+        this.bridge = bridge;
+        this.format = PropertiesFile.getPropValue("screencast.format", "avi").toLowerCase();
+        this.fps = Math.max(1, Integer.parseInt(PropertiesFile.getPropValue("screencast.fps", "5")));
+        this.scale = Double.parseDouble(PropertiesFile.getPropValue("screencast.scale", "0.5"));
+        this.quality = Integer.parseInt(PropertiesFile.getPropValue("screencast.quality", "60"));
+        this.everyNthFrame = Math.max(1, Integer.parseInt(PropertiesFile.getPropValue("screencast.everyNthFrame", "1")));
+        bridge.enable("Page");
+        bridge.addListener("Page.screencastFrame", this::onFrame);
+    }
+
+    /**
+     * Returns the recorder for the given driver.
+     *
+     * @param driver the WebDriver instance in use.
+     * @return the recorder, or empty if the browser does not expose DevTools.
+     */
+    public static Optional<ScreencastRecorder> forDriver(WebDriver driver) {
+        synchronized (recorders) {
+            ScreencastRecorder recorder = recorders.get(driver);
+            if (recorder == null) {
+                Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+                if (!bridge.isPresent()) {
+                    return Optional.empty();
+                }
+                recorder = new ScreencastRecorder(bridge.get());
+                recorders.put(driver, recorder);
+            }
+            return Optional.of(recorder);
+        }
+    }
+
+    /**
+     * Gets the configured container format.
+     *
+     * @return the file extension for recordings, "avi" or "mjpeg".
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Starts recording to the given file, stopping any recording in progress.
+     *
+     * @param target the video file; parent directories are created.
+     * @throws IOException if the file cannot be created.
+     */
+    public synchronized void start(Path target) throws IOException {
+        stop();
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        current = new Recording(target, "mjpeg".equals(format) ? new MjpegSink(target) : new AviSink(target));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("format", "jpeg");
+        params.put("quality", quality);
+        params.put("everyNthFrame", everyNthFrame);
+        Map<String, Object> viewport = viewportSize();
+        if (viewport != null) {
+            params.put("maxWidth", (int) Math.max(1, ((Number) viewport.get("clientWidth")).doubleValue() * scale));
+            params.put("maxHeight", (int) Math.max(1, ((Number) viewport.get("clientHeight")).doubleValue() * scale));
+        }
+        try {
+            bridge.send("Page.startScreencast", params);
+        } catch (RuntimeException e) {
+            Recording failed = current;
+            current = null;
+            failed.finish();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the recording in progress and waits until its file is complete.
+     *
+     * @return the recorded file, or null if nothing was recording or no frame was received.
+     */
+    public synchronized Path stop() {
+        Recording recording = current;
+        if (recording == null) {
+            return null;
+        }
+        current = null;
+        try {
+            bridge.send("Page.stopScreencast", Collections.<String, Object>emptyMap());
+        } catch (Exception e) {
+            System.out.println("Could not stop screencast: " + e.getMessage());
+        }
+        return recording.finish();
+    }
+
+    private Map<String, Object> viewportSize() {
+        try {
+            Object viewport = bridge.send("Page.getLayoutMetrics", Collections.<String, Object>emptyMap()).get("cssLayoutViewport");
+            return viewport instanceof Map ? castMap(viewport) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs on the DevTools connection thread: hands the frame and its acknowledgement to the recording thread.
+     */
+    private void onFrame(Map<String, Object> event) {
+        Recording recording = current;
+        if (recording == null) {
+            return;
+        }
+        Object sessionId = event.get("sessionId");
+        Object metadata = event.get("metadata");
+        Object timestamp = metadata instanceof Map ? castMap(metadata).get("timestamp") : null;
+        double seconds = timestamp instanceof Number ? ((Number) timestamp).doubleValue() : System.nanoTime() / 1e9;
+        recording.submit((String) event.get("data"), seconds, sessionId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * One recording: a file sink fed in order by a single thread, which also acknowledges the frames
+     * so the browser keeps sending them.
+     */
+    private final class Recording {
+
+        private final Path target;
+        private final FrameSink sink;
+        private final ExecutorService writer;
+        private double startSeconds = -1;
+        private long nextSlot;
+        private byte[] pending;
+        private int frames;
+
+        Recording(Path target, FrameSink sink) {
+            this.target = target;
+            this.sink = sink;
+            this.writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "screencast-" + target.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void submit(String base64, double seconds, Object sessionId) {
+            try {
+                writer.execute(() -> {
+                    acknowledge(sessionId);
+                    try {
+                        write(Base64.getDecoder().decode(base64), seconds);
+                    } catch (Exception e) {
+                        System.out.println("Screencast frame dropped: " + e.getMessage());
+                    }
+                });
+            } catch (Exception e) {
+                // Recording already finished; late frames are ignored
+            }
+        }
+
+        private void acknowledge(Object sessionId) {
+            if (sessionId == null) {
+                return;
+            }
+            try {
+                Map<String, Object> params = new HashMap<>();
+                params.put("sessionId", sessionId);
+                bridge.send("Page.screencastFrameAck", params);
+            } catch (Exception e) {
+                // The screencast was stopped or the session is gone
+            }
+        }
+
+        /**
+         * Resamples the frames pushed by the browser (only on visual change) to a constant rate:
+         * the previous frame is repeated for every slot until the new frame's timestamp.
+         */
+        private void write(byte[] jpeg, double seconds) throws IOException {
+            if (startSeconds < 0) {
+                startSeconds = seconds;
+            }
+            long slot = (long) ((seconds - startSeconds) * fps);
+            if (pending != null) {
+                for (; nextSlot < slot; nextSlot++) {
+                    sink.write(pending);
+                    frames++;
+                }
+            }
+            pending = jpeg;
+        }
+
+        Path finish() {
+            Future<?> closed = writer.submit(() -> {
+                try {
+                    if (pending != null) {
+                        sink.write(pending);
+                        frames++;
+                    }
+                    sink.close();
+                } catch (IOException e) {
+                    System.out.println("Could not finish screencast " + target + ": " + e.getMessage());
+                }
+            });
+            writer.shutdown();
+            try {
+                closed.get(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.out.println("Screencast " + target + " did not finish: " + e.getMessage());
+            }
+            if (frames == 0) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException e) {
+                    // Leave the empty file behind
+                }
+                return null;
+            }
+            return target;
+        }
+    }
+
+    private interface FrameSink {
+        void write(byte[] jpeg) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * Concatenated JPEG frames, playable as an MJPEG stream by most video players.
+     */
+    private static final class MjpegSink implements FrameSink {
+
+        private final OutputStream out;
+
+        MjpegSink(Path target) throws IOException {
+            this.out = Files.newOutputStream(target);
+        }
+
+        @Override
+        public void write(byte[] jpeg) throws IOException {
+            out.write(jpeg);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * MJPEG AVI written incrementally. The track size is taken from the first frame; frames of a
+     * different size (viewport resized mid-test) are skipped.
+     */
+    private final class AviSink implements FrameSink {
+
+        private final Path target;
+        private AVIOutputStream out;
+        private int track;
+        private int width;
+        private int height;
+
+        AviSink(Path target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(byte[] jpeg) throws IOException {
+            int[] size = jpegSize(jpeg);
+            if (out == null) {
+                width = size[0];
+                height = size[1];
+                out = new AVIOutputStream(target.toFile());
+                track = out.addVideoTrack("MJPG", 1, fps, width, height, 24, 1);
+            }
+            if (size[0] == width && size[1] == height) {
+                out.writeSample(track, jpeg, 0, jpeg.length, true);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+
+        private int[] jpegSize(byte[] jpeg) throws IOException {
+            try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                if (!readers.hasNext()) {
+                    throw new IOException("Not an image");
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in);
+                    return new int[]{reader.getWidth(0), reader.getHeight(0)};
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+    }
+}
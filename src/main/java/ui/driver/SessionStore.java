@@ -0,0 +1,392 @@
+package ui.driver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import properties.PropertiesFile;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+
+/**
+ * Persists an authenticated browser session (cookies and localStorage) so new drivers can skip the login flow.
+ * <p>
+ * The session is encrypted on disk with AES-GCM, using a key derived from {@code sessionStore.key} in
+ * configs.properties or the {@code SESSION_STORE_KEY} environment variable. Without a key the session
+ * is only shared in memory between the workers of one JVM.
+ * <p>
+ * A stored session is considered valid while it is younger than {@code sessionStore.maxAgeMinutes} and
+ * its login cookie ({@code sessionStore.loginCookie}) has not expired. When several workers find an
+ * invalid session at the same time, only one of them logs in; the others wait and reuse its session.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     SessionStore sessions = SessionStore.getInstance();
+ *     long generation = sessions.restore(driver);
+ *     ... navigate, detect that the login page is shown ...
+ *     if (!sessions.loginOnce(driver, generation, () -> loginPage.login(user, password))) {
+ *         ... another worker logged in, the session was restored: navigate again ...
+ *     }
+ * </pre>
+ */
+public class SessionStore {
+
+    /**
+     * Runs the real login flow in the browser.
+     */
+    public interface LoginAction {
+        void login() throws Exception;
+    }
+
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final List<String> COOKIE_PARAMS = Arrays.asList(
+            "name", "value", "domain", "path", "secure", "httpOnly", "sameSite", "expires");
+
+    private static SessionStore instance;
+
+    private final Path file;
+    private final char[] passphrase;
+    private final Duration maxAge;
+    private final String loginCookie;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SecureRandom random = new SecureRandom();
+
+    /** Identifier of the localStorage script registered in each browser, so a later restore replaces it. */
+    private final Map<WebDriver, String> storageScripts = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Map<String, Object> session;
+    private long generation;
+    private boolean loginInProgress;
+
+    /**
+     * Creates a session store.
+     *
+     * @param file        the encrypted session file.
+     * @param passphrase  the passphrase the encryption key is derived from, or null to keep the session in memory only.
+     * @param maxAge      the maximum age of a reusable session.
+     * @param loginCookie the cookie that is only present while logged in.
+     */
+    public SessionStore(Path file, char[] passphrase, Duration maxAge, String loginCookie) {
+        this.file = file;
+        this.passphrase = passphrase;
+        this.maxAge = maxAge;
+        this.loginCookie = loginCookie;
+    }
+
+    /**
+     * Returns the shared session store configured from configs.properties.
+     *
+     * @return the JVM-wide SessionStore instance.
+     */
+    public static synchronized SessionStore getInstance() {
+        if (instance == null) {
+            String key = System.getenv("SESSION_STORE_KEY");
+            if (key == null || key.isEmpty()) {
+                key = PropertiesFile.getPropValue("sessionStore.key", null);
+            }
+            if (key == null) {
+                System.out.println("No session store key configured, login sessions are not persisted to disk.");
+            }
+            instance = new SessionStore(
+                    Paths.get(PropertiesFile.getPropValue("sessionStore.path", "ExportData/Session/session.bin")),
+                    key == null ? null : key.toCharArray(),
+                    Duration.ofMinutes(Long.parseLong(PropertiesFile.getPropValue("sessionStore.maxAgeMinutes", "720"))),
+                    PropertiesFile.getPropValue("sessionStore.loginCookie", "edxloggedin"));
+        }
+        return instance;
+    }
+
+    /**
+     * Seeds the browser with the stored session if it is still valid.
+     *
+     * @param driver the WebDriver instance to seed.
+     * @return the generation of the applied session, or -1 if no valid session was available.
+     */
+    public synchronized long restore(WebDriver driver) {
+        Map<String, Object> current = loadSession();
+        if (current == null || !isValid(current)) {
+            return -1;
+        }
+        apply(driver, current);
+        return generation;
+    }
+
+    /**
+     * Logs in unless another worker already refreshed the session since {@code seenGeneration}.
+     * <p>
+     * Only one worker runs the login at a time; the store is not locked while it does, so other workers
+     * can still restore sessions. A worker that waited while another one logged in gets the new session
+     * applied to its browser instead, or logs in itself if that login failed.
+     *
+     * @param driver         the WebDriver instance showing the login page.
+     * @param seenGeneration the generation returned by {@link #restore(WebDriver)} for this browser.
+     * @param loginAction    the real login flow.
+     * @return true if this call performed the login; false if a newer session was restored instead.
+     * @throws Exception if the login flow fails.
+     */
+    public boolean loginOnce(WebDriver driver, long seenGeneration, LoginAction loginAction) throws Exception {
+        synchronized (this) {
+            while (true) {
+                Map<String, Object> current = loadSession();
+                if (current != null && generation > seenGeneration && isValid(current)) {
+                    apply(driver, current);
+                    return false;
+                }
+                if (!loginInProgress) {
+                    break;
+                }
+                wait();
+            }
+            loginInProgress = true;
+        }
+        try {
+            loginAction.login();
+            save(driver);
+            return true;
+        } finally {
+            synchronized (this) {
+                loginInProgress = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Captures the cookies and localStorage of the browser and stores them encrypted on disk.
+     *
+     * @param driver the logged-in WebDriver instance.
+     */
+    public synchronized void save(WebDriver driver) {
+        Map<String, Object> captured = new LinkedHashMap<>();
+        captured.put("savedAt", System.currentTimeMillis());
+        captured.put("cookies", captureCookies(driver));
+
+        Map<String, Object> localStorage = new HashMap<>();
+        try {
+            Object origin = ((JavascriptExecutor) driver).executeScript("return window.location.origin");
+            Object items = ((JavascriptExecutor) driver).executeScript(
+                    "var items = {}; for (var i = 0; i < localStorage.length; i++) {" +
+                    "  var key = localStorage.key(i); items[key] = localStorage.getItem(key); } return items;");
+            if (origin != null && items instanceof Map) {
+                localStorage.put(origin.toString(), items);
+            }
+        } catch (Exception e) {
+            System.out.println("Could not capture localStorage: " + e.getMessage());
+        }
+        captured.put("localStorage", localStorage);
+
+        session = captured;
+        generation++;
+        if (passphrase != null) {
+            try {
+                writeEncrypted(mapper.writeValueAsBytes(captured));
+            } catch (Exception e) {
+                System.out.println("Could not persist login session: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops restoring the stored localStorage into new documents of a browser, e.g. when it is reset for
+     * another test. A later {@link #restore(WebDriver)} registers the restore script again.
+     *
+     * @param driver the WebDriver instance to forget.
+     */
+    public void forget(WebDriver driver) {
+        String identifier = storageScripts.remove(driver);
+        if (identifier == null) {
+            return;
+        }
+        Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+        if (bridge.isPresent()) {
+            Map<String, Object> remove = new HashMap<>();
+            remove.put("identifier", identifier);
+            bridge.get().send("Page.removeScriptToEvaluateOnNewDocument", remove);
+        }
+    }
+
+    /**
+     * Checks cheaply, without a browser, whether a session is still usable.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isValid(Map<String, Object> candidate) {
+        long savedAt = ((Number) candidate.get("savedAt")).longValue();
+        if (System.currentTimeMillis() - savedAt > maxAge.toMillis()) {
+            return false;
+        }
+        double nowSeconds = System.currentTimeMillis() / 1000.0;
+        for (Map<String, Object> cookie : (List<Map<String, Object>>) candidate.get("cookies")) {
+            if (loginCookie.equals(cookie.get("name"))) {
+                Object expires = cookie.get("expires");
+                return !(expires instanceof Number) || ((Number) expires).doubleValue() <= 0
+                        || ((Number) expires).doubleValue() > nowSeconds;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(WebDriver driver, Map<String, Object> stored) {
+        List<Map<String, Object>> cookies = (List<Map<String, Object>>) stored.get("cookies");
+        Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+        if (bridge.isPresent()) {
+            // All domains at once, without navigating to each of them first
+            List<Map<String, Object>> cookieParams = new ArrayList<>();
+            for (Map<String, Object> cookie : cookies) {
+                Map<String, Object> param = new HashMap<>();
+                for (String key : COOKIE_PARAMS) {
+                    if (cookie.get(key) != null) {
+                        param.put(key, cookie.get(key));
+                    }
+                }
+                if (param.get("expires") instanceof Number && ((Number) param.get("expires")).doubleValue() <= 0) {
+                    param.remove("expires");
+                }
+                cookieParams.add(param);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("cookies", cookieParams);
+            bridge.get().send("Network.setCookies", params);
+
+            // Put localStorage back before any page script of the matching origin runs
+            Map<String, Object> localStorage = (Map<String, Object>) stored.get("localStorage");
+            if (localStorage != null && !localStorage.isEmpty()) {
+                try {
+                    Map<String, Object> script = new HashMap<>();
+                    script.put("source", "(function (stored) { var items = stored[window.location.origin];" +
+                            " if (!items) { return; } for (var key in items) { localStorage.setItem(key, items[key]); } })("
+                            + mapper.writeValueAsString(localStorage) + ");");
+                    String previous = storageScripts.remove(driver);
+                    if (previous != null) {
+                        Map<String, Object> remove = new HashMap<>();
+                        remove.put("identifier", previous);
+                        bridge.get().send("Page.removeScriptToEvaluateOnNewDocument", remove);
+                    }
+                    Object identifier = bridge.get().send("Page.addScriptToEvaluateOnNewDocument", script).get("identifier");
+                    if (identifier != null) {
+                        storageScripts.put(driver, identifier.toString());
+                    }
+                } catch (IOException e) {
+                    System.out.println("Could not restore localStorage: " + e.getMessage());
+                }
+            }
+        } else {
+            // WebDriver can only set cookies for the domain of the current page
+            for (Map<String, Object> cookie : cookies) {
+                String domain = String.valueOf(cookie.get("domain"));
+                String host = domain.startsWith(".") ? domain.substring(1) : domain;
+                if (!driver.getCurrentUrl().contains(host)) {
+                    driver.navigate().to("https://" + host + "/");
+                }
+                Object expires = cookie.get("expires");
+                Date expiry = expires instanceof Number && ((Number) expires).doubleValue() > 0
+                        ? new Date((long) (((Number) expires).doubleValue() * 1000)) : null;
+                driver.manage().addCookie(new Cookie(String.valueOf(cookie.get("name")), String.valueOf(cookie.get("value")),
+                        domain, String.valueOf(cookie.get("path")), expiry,
+                        Boolean.TRUE.equals(cookie.get("secure")), Boolean.TRUE.equals(cookie.get("httpOnly"))));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> captureCookies(WebDriver driver) {
+        Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+        if (bridge.isPresent()) {
+            Object cookies = bridge.get().send("Network.getAllCookies", Collections.<String, Object>emptyMap()).get("cookies");
+            if (cookies instanceof List) {
+                return (List<Map<String, Object>>) cookies;
+            }
+        }
+
+        List<Map<String, Object>> cookies = new ArrayList<>();
+        for (Cookie cookie : driver.manage().getCookies()) {
+            Map<String, Object> stored = new LinkedHashMap<>();
+            stored.put("name", cookie.getName());
+            stored.put("value", cookie.getValue());
+            stored.put("domain", cookie.getDomain());
+            stored.put("path", cookie.getPath());
+            stored.put("secure", cookie.isSecure());
+            stored.put("httpOnly", cookie.isHttpOnly());
+            stored.put("expires", cookie.getExpiry() == null ? -1 : cookie.getExpiry().getTime() / 1000.0);
+            cookies.add(stored);
+        }
+        return cookies;
+    }
+
+    /**
+     * Returns the in-memory session, reading and decrypting the session file on first use.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> loadSession() {
+        if (session == null && passphrase != null && Files.exists(file)) {
+            try {
+                session = mapper.readValue(readEncrypted(), Map.class);
+                generation++;
+            } catch (Exception e) {
+                System.out.println("Could not read stored login session: " + e.getMessage());
+            }
+        }
+        return session;
+    }
+
+    /**
+     * File layout: salt (16 bytes) | IV (12 bytes) | AES-GCM ciphertext with tag.
+     */
+    private void writeEncrypted(byte[] plain) throws GeneralSecurityException, IOException {
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(salt);
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, deriveKey(salt), new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(plain);
+
+        ByteBuffer out = ByteBuffer.allocate(SALT_LENGTH + IV_LENGTH + encrypted.length);
+        out.put(salt).put(iv).put(encrypted);
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tempFile = Files.createTempFile(dir, "session", ".tmp");
+        Files.write(tempFile, out.array());
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] readEncrypted() throws GeneralSecurityException, IOException {
+        byte[] content = Files.readAllBytes(file);
+        byte[] salt = Arrays.copyOfRange(content, 0, SALT_LENGTH);
+        byte[] iv = Arrays.copyOfRange(content, SALT_LENGTH, SALT_LENGTH + IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, deriveKey(salt), new GCMParameterSpec(128, iv));
+        return cipher.doFinal(content, SALT_LENGTH + IV_LENGTH, content.length - SALT_LENGTH - IV_LENGTH);
+    }
+
+    private SecretKeySpec deriveKey(byte[] salt) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        byte[] key = factory.generateSecret(new PBEKeySpec(passphrase, salt, 65536, 256)).getEncoded();
+        return new SecretKeySpec(key, "AES");
+    }
+}
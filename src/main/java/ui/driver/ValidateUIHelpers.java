@@ -5,9 +5,12 @@ import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.testng.Assert;
+import properties.PropertiesFile;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * A helper class that provides reusable methods to interact with and validate UI elements using Selenium WebDriver.
@@ -16,6 +19,7 @@ public class ValidateUIHelpers {
 
     private WebDriver driver;
     private WebDriverWait wait;
+    private Optional<NetworkIdleMonitor> networkIdleMonitor;
     private int timeoutWaitForPageLoaded = 30;
 
     /**
@@ -90,8 +94,83 @@ public class ValidateUIHelpers {
      * @return true if element exists; false otherwise.
      */
     public boolean verifyElementExist(By element){
-        List<WebElement> listElement = driver.findElements(element);
-        return listElement.size() > 0;
+        return isElementPresent(element);
+    }
+
+    /**
+     * Runs an action with the implicit wait temporarily set to zero, then restores the previous value.
+     * <p>
+     * Lookups of elements that are legitimately absent return immediately instead of blocking
+     * for the whole implicit wait.
+     *
+     * @param driver the WebDriver instance in use.
+     * @param action the lookup to run.
+     * @param <T>    the result type of the action.
+     * @return the result of the action.
+     */
+    public static <T> T withoutImplicitWait(WebDriver driver, Supplier<T> action) {
+        WebDriver.Timeouts timeouts = driver.manage().timeouts();
+        Duration implicitWait = timeouts.getImplicitWaitTimeout();
+        if (implicitWait.isZero()) {
+            return action.get();
+        }
+        timeouts.implicitlyWait(Duration.ZERO);
+        try {
+            return action.get();
+        } finally {
+            timeouts.implicitlyWait(implicitWait);
+        }
+    }
+
+    /**
+     * Checks whether an element is currently in the DOM, without waiting for it to appear.
+     *
+     * @param element the locator of the element.
+     * @return true if at least one element matches; false otherwise.
+     */
+    public boolean isElementPresent(By element) {
+        return withoutImplicitWait(driver, () -> !driver.findElements(element).isEmpty());
+    }
+
+    /**
+     * Checks whether an element is currently absent from the DOM, without waiting.
+     *
+     * @param element the locator of the element.
+     * @return true if no element matches; false otherwise.
+     */
+    public boolean isElementAbsent(By element) {
+        return !isElementPresent(element);
+    }
+
+    /**
+     * Checks whether an element matching a CSS selector is in the DOM with a single script call.
+     * <p>
+     * Unaffected by the implicit wait and cheaper than {@link #isElementPresent(By)} when the implicit
+     * wait is non-zero, because the timeouts do not need to be changed and restored.
+     *
+     * @param cssSelector the CSS selector of the element.
+     * @return true if at least one element matches; false otherwise.
+     */
+    public boolean isElementPresentInDom(String cssSelector) {
+        return Boolean.TRUE.equals(((JavascriptExecutor) driver)
+                .executeScript("return document.querySelector(arguments[0]) !== null", cssSelector));
+    }
+
+    /**
+     * Waits until no element matches the locator anymore, using explicit polling only.
+     *
+     * @param element the locator of the element.
+     * @param timeout the maximum time to wait.
+     * @return true if the element disappeared before the timeout; false otherwise.
+     */
+    public boolean waitForElementAbsent(By element, Duration timeout) {
+        return withoutImplicitWait(driver, () -> {
+            try {
+                return new WebDriverWait(driver, timeout).until(ExpectedConditions.numberOfElementsToBe(element, 0)) != null;
+            } catch (TimeoutException e) {
+                return false;
+            }
+        });
     }
 
     /**
@@ -103,18 +182,112 @@ public class ValidateUIHelpers {
     public boolean verifyPageLoaded(String pageLoadedText) {
         waitForPageLoaded();
         boolean res;
-        List<WebElement> elementList = driver.findElements(By.xpath("//*[contains(text(),'" + pageLoadedText + "')]"));
-        res = elementList.size() > 0;
+        res = isElementPresent(By.xpath("//*[contains(text(),'" + pageLoadedText + "')]"));
         System.out.println("Page loaded (" + res + "): " + pageLoadedText);
         return res;
     }
 
     /**
-     * Waits for both jQuery and JavaScript on the page to fully load.
+     * Waits until a JavaScript condition holds in the page, without polling from the test side.
+     * <p>
+     * The condition is evaluated in the browser each time the DOM changes, using a MutationObserver
+     * inside {@code executeAsyncScript}, so the call returns as soon as the condition becomes true.
+     * The condition is a JavaScript expression; the extra arguments are available to it as
+     * {@code args[0]}, {@code args[1]}, ... (WebElements are passed as DOM nodes).
+     *
+     * @param condition a JavaScript expression, e.g. {@code "args[0].innerText.indexOf('Show less') >= 0"}.
+     * @param timeout   the maximum time to wait for the condition.
+     * @param args      values passed to the condition as {@code args}.
+     * @return true if the condition holds before the timeout; false otherwise.
+     */
+    public boolean waitForDomCondition(String condition, Duration timeout, Object... args) {
+        String script =
+                "var callback = arguments[arguments.length - 1];" +
+                "var timeoutMs = arguments[arguments.length - 2];" +
+                "var args = Array.prototype.slice.call(arguments, 0, arguments.length - 2);" +
+                "var check = function () { try { return !!(" + condition + "); } catch (e) { return false; } };" +
+                "if (check()) { callback(true); return; }" +
+                "var observer = new MutationObserver(function () {" +
+                "  if (check()) { observer.disconnect(); clearTimeout(timer); callback(true); }" +
+                "});" +
+                "var timer = setTimeout(function () { observer.disconnect(); callback(check()); }, timeoutMs);" +
+                "observer.observe(document.documentElement, {childList: true, subtree: true, attributes: true, characterData: true});";
+
+        Object[] scriptArgs = new Object[args.length + 1];
+        System.arraycopy(args, 0, scriptArgs, 0, args.length);
+        scriptArgs[args.length] = timeout.toMillis();
+
+        // The script resolves itself at the timeout; the driver's script timeout only needs to be longer
+        WebDriver.Timeouts timeouts = driver.manage().timeouts();
+        Duration scriptTimeout = timeouts.getScriptTimeout();
+        Duration requiredTimeout = timeout.plusSeconds(5);
+        boolean raiseTimeout = scriptTimeout.compareTo(requiredTimeout) < 0;
+        if (raiseTimeout) {
+            timeouts.scriptTimeout(requiredTimeout);
+        }
+        try {
+            return Boolean.TRUE.equals(((JavascriptExecutor) driver).executeAsyncScript(script, scriptArgs));
+        } finally {
+            if (raiseTimeout) {
+                timeouts.scriptTimeout(scriptTimeout);
+            }
+        }
+    }
+
+    /**
+     * Waits until the visible text of an element contains the expected text.
+     *
+     * @param element the element to observe.
+     * @param text    the text to wait for (e.g., "Show less").
+     * @param timeout the maximum time to wait.
+     * @return true if the text appears before the timeout; false otherwise.
+     */
+    public boolean waitForTextContains(WebElement element, String text, Duration timeout) {
+        return waitForDomCondition("args[0].innerText.indexOf(args[1]) >= 0", timeout, element, text);
+    }
+
+    /**
+     * Waits until at least the given number of elements match a CSS selector.
+     *
+     * @param cssSelector the CSS selector to count.
+     * @param count       the minimum number of matching elements.
+     * @param timeout     the maximum time to wait.
+     * @return true if enough elements are present before the timeout; false otherwise.
+     */
+    public boolean waitForElementCount(String cssSelector, int count, Duration timeout) {
+        return waitForDomCondition("document.querySelectorAll(args[0]).length >= args[1]", timeout, cssSelector, count);
+    }
+
+    /**
+     * Waits until the page is ready.
+     * <p>
+     * On browsers that expose DevTools the page is ready once the network has been quiet for the
+     * window configured for the current URL (see {@link NetworkIdleMonitor}) and the document has
+     * finished loading. Other browsers, and all browsers with {@code networkIdle.enabled=false}, poll
+     * jQuery and {@code document.readyState} instead; after a network idle timeout that polling only
+     * gets the time left of the overall timeout.
      * <p>
      * Fails the test if the page takes longer than the timeout duration to load.
      */
     public void waitForPageLoaded(){
+        long deadline = System.nanoTime() + Duration.ofSeconds(timeoutWaitForPageLoaded).toNanos();
+        if (networkIdleMonitor == null) {
+            networkIdleMonitor = Boolean.parseBoolean(PropertiesFile.getPropValue("networkIdle.enabled", "true"))
+                    ? NetworkIdleMonitor.forDriver(driver)
+                    : Optional.<NetworkIdleMonitor>empty();
+        }
+
+        if (networkIdleMonitor.isPresent()) {
+            try {
+                if (networkIdleMonitor.get().awaitIdle(driver.getCurrentUrl()) && isDocumentComplete(driver)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Assert.fail("Interrupted while waiting for page load.");
+            }
+        }
+
         ExpectedCondition<Boolean> jQueryLoad = new ExpectedCondition<Boolean>() {
             @Override
             public Boolean apply(WebDriver driver) {
@@ -130,17 +303,22 @@ public class ValidateUIHelpers {
         ExpectedCondition<Boolean> jsLoad = new ExpectedCondition<Boolean>() {
             @Override
             public Boolean apply(WebDriver driver) {
-                return ((JavascriptExecutor) driver)
-                        .executeScript("return document.readyState").toString().equals("complete");
+                return isDocumentComplete(driver);
             }
         };
 
         try {
-            wait = new WebDriverWait(driver, Duration.ofSeconds(timeoutWaitForPageLoaded));
-            wait.until(jQueryLoad);
-            wait.until(jsLoad);
+            Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+            WebDriverWait pageLoadWait = new WebDriverWait(driver, remaining);
+            pageLoadWait.until(jQueryLoad);
+            pageLoadWait.until(jsLoad);
         } catch (Throwable error) {
             Assert.fail("Page load timeout exceeded.");
         }
     }
+
+    private static boolean isDocumentComplete(WebDriver driver) {
+        return ((JavascriptExecutor) driver)
+                .executeScript("return document.readyState").toString().equals("complete");
+    }
 }
@@ -0,0 +1,391 @@
+package DataExport;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import properties.PropertiesFile;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams scraped courses to NDJSON or CSV files as they are extracted.
+ * <p>
+ * Every {@link #write(CourseRecord)} goes straight through a Jackson streaming generator to the current
+ * file and is flushed, so downstream jobs can read finished lines while the crawl is still running;
+ * nothing is buffered per run. With gzip the stream is sync-flushed after each course, so the part
+ * written so far is always a readable gzip prefix.
+ * <p>
+ * Files are named {@code <prefix>-<run>-<part>.<ndjson|csv>[.gz]}, where the run is the start time and
+ * the process id, and rotated when the bytes written
+ * to disk reach {@code maxBytes}; a course is never split across files. Each CSV part starts with its
+ * own header row. Files are only ever created new: an exporter that finds its first file name taken
+ * (a second exporter in the same process and second) adds a counter to its run, and never overwrites
+ * another run's file.
+ * <ul>
+ *     <li>NDJSON: one object per line with link, name, description, duration, learningOutcomes,
+ *         instructors (name → role) and outline (section → lesson → URL).</li>
+ *     <li>CSV: one row per course; learning outcomes, instructors and sections are written as JSON arrays
+ *         of strings, e.g. {@code ["Basics; part 1","Advanced"]}, since the texts may contain any
+ *         separator. The outline is reduced to its section titles and lesson count.</li>
+ * </ul>
+ * Typical usage:
+ * <pre>
+ *     try (CourseExporter exporter = CourseExporter.open(Paths.get("ExportData/Courses"), "courses",
+ *             CourseExporter.Format.NDJSON, true, 64L * 1024 * 1024)) {
+ *         exporter.write(record);
+ *     }
+ * </pre>
+ */
+public class CourseExporter implements Closeable {
+
+    /**
+     * Output format of an exporter.
+     */
+    public enum Format {
+        NDJSON("ndjson"),
+        CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CsvFactory CSV = new CsvFactory();
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("link")
+            .addColumn("name")
+            .addColumn("description")
+            .addColumn("duration")
+            .addColumn("learningOutcomes")
+            .addColumn("instructors")
+            .addColumn("sections")
+            .addNumberColumn("lessons")
+            .build()
+            .withHeader();
+    private static final DateTimeFormatter RUN_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path directory;
+    private final String prefix;
+    private final Format format;
+    private final boolean gzip;
+    private final long maxBytes;
+    private String runId;
+    private int part;
+    private long written;
+    private CountingOutputStream file;
+    private JsonGenerator generator;
+
+    private CourseExporter(Path directory, String prefix, Format format, boolean gzip, long maxBytes) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.format = format;
+        this.gzip = gzip;
+        this.maxBytes = maxBytes;
+        this.runId = LocalDateTime.now().format(RUN_ID) + "-" + processId();
+    }
+
+    /**
+     * Creates an exporter. The first file is created on the first {@link #write(CourseRecord)}.
+     *
+     * @param directory the directory the files are written to; created if missing.
+     * @param prefix    the file name prefix, e.g. "courses".
+     * @param format    NDJSON or CSV.
+     * @param gzip      whether to gzip the files.
+     * @param maxBytes  the on-disk size after which the next course goes to a new file; 0 disables rotation.
+     * @return the exporter.
+     * @throws IOException if the directory cannot be created.
+     */
+    public static CourseExporter open(Path directory, String prefix, Format format, boolean gzip, long maxBytes)
+            throws IOException {
+        Files.createDirectories(directory);
+        return new CourseExporter(directory, prefix, format, gzip, maxBytes);
+    }
+
+    /**
+     * Creates the exporter configured in configs.properties ({@code export.enabled}, {@code export.path},
+     * {@code export.format} ndjson or csv, {@code export.gzip} and {@code export.maxFileMb}).
+     *
+     * @return the exporter, or empty if exporting is disabled.
+     * @throws IOException if the export directory cannot be created.
+     */
+    public static Optional<CourseExporter> fromConfig() throws IOException {
+        if (!Boolean.parseBoolean(PropertiesFile.getPropValue("export.enabled", "true"))) {
+            return Optional.empty();
+        }
+        String projectPath = System.getProperty("user.dir") + "/";
+        return Optional.of(open(Paths.get(projectPath + PropertiesFile.getPropValue("export.path", "ExportData/Courses")),
+                "courses",
+                Format.valueOf(PropertiesFile.getPropValue("export.format", "ndjson").trim().toUpperCase(Locale.ROOT)),
+                Boolean.parseBoolean(PropertiesFile.getPropValue("export.gzip", "true")),
+                (long) (Double.parseDouble(PropertiesFile.getPropValue("export.maxFileMb", "64")) * 1024 * 1024)));
+    }
+
+    /**
+     * Describes where the courses go, e.g. to tell whether a course index was built for this exporter.
+     *
+     * @return the format and the file prefix path, e.g. "ndjson /data/ExportData/Courses/courses".
+     */
+    public String getTarget() {
+        return format.extension + " " + directory.toAbsolutePath().normalize().resolve(prefix);
+    }
+
+    /**
+     * Writes one course and flushes it to disk. Safe to call from several crawler threads.
+     *
+     * @param record the scraped course.
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized void write(CourseRecord record) throws IOException {
+        if (generator == null) {
+            nextPart();
+        }
+        if (format == Format.CSV) {
+            writeRow(record);
+        } else {
+            writeLine(record);
+        }
+        generator.flush();
+        if (maxBytes > 0 && file.count >= maxBytes) {
+            closePart();
+        }
+    }
+
+    private void writeLine(CourseRecord record) throws IOException {
+        writeCourse(generator, record);
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Writes a course as one JSON object in the NDJSON layout.
+     *
+     * @param generator the generator to write to.
+     * @param record    the course.
+     * @throws IOException if writing fails.
+     */
+    public static void writeCourse(JsonGenerator generator, CourseRecord record) throws IOException {
+        CourseSnapshot snapshot = record.getSnapshot();
+        generator.writeStartObject();
+        generator.writeStringField("link", record.getLink());
+        generator.writeStringField("name", snapshot.getName());
+        generator.writeStringField("description", snapshot.getDescription());
+        generator.writeStringField("duration", snapshot.getDuration());
+        generator.writeArrayFieldStart("learningOutcomes");
+        for (String outcome : snapshot.getLearningOutcomes()) {
+            generator.writeString(outcome);
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("instructors");
+        for (Map.Entry<String, String> instructor : snapshot.getInstructors().entrySet()) {
+            generator.writeStringField(instructor.getKey(), instructor.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("outline");
+        for (Map.Entry<String, Map<String, String>> section : record.getOutline().entrySet()) {
+            generator.writeObjectFieldStart(section.getKey());
+            for (Map.Entry<String, String> lesson : section.getValue().entrySet()) {
+                generator.writeStringField(lesson.getKey(), lesson.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads a course written by {@link #writeCourse(JsonGenerator, CourseRecord)}.
+     *
+     * @param course the parsed JSON object.
+     * @return the course.
+     */
+    public static CourseRecord readCourse(JsonNode course) {
+        List<String> outcomes = new ArrayList<>();
+        for (JsonNode outcome : course.path("learningOutcomes")) {
+            outcomes.add(outcome.asText());
+        }
+        LinkedHashMap<String, String> instructors = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = course.path("instructors").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> instructor = it.next();
+            instructors.put(instructor.getKey(), instructor.getValue().asText());
+        }
+        LinkedHashMap<String, Map<String, String>> outline = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = course.path("outline").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> section = it.next();
+            LinkedHashMap<String, String> lessons = new LinkedHashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> lesson = section.getValue().fields(); lesson.hasNext(); ) {
+                Map.Entry<String, JsonNode> entry = lesson.next();
+                lessons.put(entry.getKey(), entry.getValue().asText());
+            }
+            outline.put(section.getKey(), lessons);
+        }
+        CourseSnapshot snapshot = new CourseSnapshot(textOrNull(course, "name"), textOrNull(course, "description"),
+                textOrNull(course, "duration"), outcomes, instructors);
+        return new CourseRecord(textOrNull(course, "link"), snapshot, outline);
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private void writeRow(CourseRecord record) throws IOException {
+        CourseSnapshot snapshot = record.getSnapshot();
+        generator.writeStartObject();
+        generator.writeStringField("link", record.getLink());
+        generator.writeStringField("name", snapshot.getName());
+        generator.writeStringField("description", snapshot.getDescription());
+        generator.writeStringField("duration", snapshot.getDuration());
+        generator.writeStringField("learningOutcomes", jsonArray(snapshot.getLearningOutcomes()));
+        List<String> instructors = new ArrayList<>();
+        for (Map.Entry<String, String> instructor : snapshot.getInstructors().entrySet()) {
+            instructors.add(instructor.getKey() + ": " + instructor.getValue());
+        }
+        generator.writeStringField("instructors", jsonArray(instructors));
+        int lessons = 0;
+        for (Map<String, String> section : record.getOutline().values()) {
+            lessons += section.size();
+        }
+        generator.writeStringField("sections", jsonArray(record.getOutline().keySet()));
+        generator.writeNumberField("lessons", lessons);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Encodes a list column as a JSON array; the CSV generator quotes the cell as needed.
+     */
+    private static String jsonArray(Iterable<String> values) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator array = JSON.createGenerator(json)) {
+            array.writeStartArray();
+            for (String value : values) {
+                array.writeString(value);
+            }
+            array.writeEndArray();
+        }
+        return json.toString();
+    }
+
+    private static String processId() {
+        // "<pid>@<host>" on the usual JVMs
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : Integer.toHexString(name.hashCode());
+    }
+
+    private Path partPath() {
+        return directory.resolve(String.format("%s-%s-%04d.%s%s",
+                prefix, runId, part, format.extension, gzip ? ".gz" : ""));
+    }
+
+    private void nextPart() throws IOException {
+        part++;
+        Path target = partPath();
+        OutputStream stream;
+        if (part == 1) {
+            String baseRunId = runId;
+            for (int attempt = 2; ; attempt++) {
+                try {
+                    stream = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    runId = baseRunId + "-" + attempt;
+                    target = partPath();
+                }
+            }
+        } else {
+            // Later parts belong to this run alone; a clash means something else writes under the same run
+            stream = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        file = new CountingOutputStream(stream);
+        // Sync flush pushes each course through the deflater, so readers never wait for the next one
+        OutputStream out = gzip ? new GZIPOutputStream(file, 64 * 1024, true) : file;
+        if (format == Format.CSV) {
+            CsvGenerator csv = CSV.createGenerator(out);
+            csv.setSchema(CSV_SCHEMA);
+            generator = csv;
+        } else {
+            generator = JSON.createGenerator(out);
+            // Lines are separated by the newline written after each course, not by Jackson's default space
+            generator.setRootValueSeparator(null);
+        }
+        System.out.println("Exporting courses to " + target);
+    }
+
+    private void closePart() throws IOException {
+        if (generator != null) {
+            generator.close();
+            written += file.count;
+            generator = null;
+            file = null;
+        }
+    }
+
+    /**
+     * Gets the number of bytes written to disk so far, over all parts.
+     *
+     * @return the byte count.
+     */
+    public synchronized long getBytesWritten() {
+        return written + (file == null ? 0 : file.count);
+    }
+
+    /**
+     * Closes the current file. An exporter that was never written to leaves no file behind.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closePart();
+    }
+
+    /**
+     * Counts the bytes that reach the file, i.e. after compression.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package DataExport;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes courses into a temporary directory and reads the parts back the way a downstream job would.
+ */
+public class CourseExporterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void partsAreRotatedBetweenCourses() throws Exception {
+        Path dir = Files.createTempDirectory("export");
+        long bytes;
+        try (CourseExporter exporter = CourseExporter.open(dir, "courses", CourseExporter.Format.NDJSON, false, 1)) {
+            for (int i = 1; i <= 3; i++) {
+                exporter.write(course(i));
+            }
+            bytes = exporter.getBytesWritten();
+        }
+
+        List<Path> parts = parts(dir);
+        Assert.assertEquals(parts.size(), 3, "Expected one part per course: " + parts);
+        long onDisk = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            Assert.assertTrue(parts.get(i).getFileName().toString().endsWith(String.format("-%04d.ndjson", i + 1)));
+            List<String> lines = Files.readAllLines(parts.get(i), StandardCharsets.UTF_8);
+            Assert.assertEquals(lines.size(), 1, "Course split or merged in " + parts.get(i));
+            Assert.assertEquals(CourseExporter.readCourse(MAPPER.readTree(lines.get(0))).getLink(), link(i + 1));
+            onDisk += Files.size(parts.get(i));
+        }
+        Assert.assertEquals(bytes, onDisk);
+    }
+
+    @Test
+    public void csvPartsEachStartWithTheHeader() throws Exception {
+        Path dir = Files.createTempDirectory("export");
+        try (CourseExporter exporter = CourseExporter.open(dir, "courses", CourseExporter.Format.CSV, false, 1)) {
+            exporter.write(course(1));
+            exporter.write(course(2));
+        }
+
+        for (Path part : parts(dir)) {
+            List<String> lines = Files.readAllLines(part, StandardCharsets.UTF_8);
+            Assert.assertTrue(lines.get(0).startsWith("link,name,description"), "No header in " + part);
+            Assert.assertEquals(lines.size(), 2);
+        }
+    }
+
+    @Test
+    public void gzipPartIsReadableWhileStillOpen() throws Exception {
+        Path dir = Files.createTempDirectory("export");
+        try (CourseExporter exporter = CourseExporter.open(dir, "courses", CourseExporter.Format.NDJSON, true, 0)) {
+            exporter.write(course(1));
+            exporter.write(course(2));
+
+            List<Path> parts = parts(dir);
+            Assert.assertEquals(parts.size(), 1);
+            // No gzip trailer yet: every course written so far inflates, only reading past them fails
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(parts.get(0)))) {
+                Assert.assertEquals(CourseExporter.readCourse(MAPPER.readTree(readLine(in))).getLink(), link(1));
+                Assert.assertEquals(CourseExporter.readCourse(MAPPER.readTree(readLine(in))).getLink(), link(2));
+            }
+        }
+    }
+
+    @Test
+    public void exportersStartedTogetherDoNotOverwriteEachOther() throws Exception {
+        Path dir = Files.createTempDirectory("export");
+        try (CourseExporter first = CourseExporter.open(dir, "courses", CourseExporter.Format.NDJSON, false, 0);
+             CourseExporter second = CourseExporter.open(dir, "courses", CourseExporter.Format.NDJSON, false, 0)) {
+            first.write(course(1));
+            second.write(course(2));
+        }
+
+        List<Path> parts = parts(dir);
+        Assert.assertEquals(parts.size(), 2, "A run overwrote another: " + parts);
+        List<String> links = new ArrayList<>();
+        for (Path part : parts) {
+            for (String line : Files.readAllLines(part, StandardCharsets.UTF_8)) {
+                links.add(CourseExporter.readCourse(MAPPER.readTree(line)).getLink());
+            }
+        }
+        Collections.sort(links);
+        Assert.assertEquals(links, Arrays.asList(link(1), link(2)));
+    }
+
+    /**
+     * Reads up to the next newline one byte at a time; a buffered reader would read past the sync point.
+     */
+    private static String readLine(InputStream in) throws Exception {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            Assert.assertTrue(b >= 0, "Line was cut off");
+            line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> parts(Path dir) throws Exception {
+        List<Path> parts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                parts.add(file);
+            }
+        }
+        Collections.sort(parts);
+        return parts;
+    }
+
+    private static String link(int i) {
+        return "https://example.com/course-" + i;
+    }
+
+    private static CourseRecord course(int i) {
+        Map<String, String> instructors = new LinkedHashMap<>();
+        instructors.put("Jane Doe", "Author");
+        Map<String, Map<String, String>> outline = new LinkedHashMap<>();
+        outline.put("Basics; part " + i, Collections.singletonMap("Lesson, \"one\"", link(i) + "/1"));
+        return new CourseRecord(link(i), new CourseSnapshot("Course " + i, "About course " + i, i + "h",
+                Arrays.asList("Outcome " + i), instructors), outline);
+    }
+}
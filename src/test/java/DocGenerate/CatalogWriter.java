@@ -0,0 +1,432 @@
+package DocGenerate;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import properties.ConfigService;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a catalog of courses into one .docx file, one course after another.
+ * <p>
+ * Unlike {@link DocGenerate#createDocument}, no document model is kept in memory. The .docx package is
+ * written directly as a zip, and {@code word/document.xml} is appended course by course while the zip
+ * stream flushes finished parts to disk. Courses are rendered to XML fragments on a thread pool and
+ * written strictly in the order they were appended; at most {@code maxInFlight} rendered courses wait
+ * for their turn, so the writer's own memory does not depend on the catalog size. That only keeps peak
+ * memory flat if the caller streams records in too; a caller that collects every record first (e.g. from
+ * a {@code CourseCrawler.CrawlResult}) holds the whole catalog itself. Hyperlink relationships are
+ * spooled to a temporary file and copied into the package on {@link #close()}.
+ * <p>
+ * The package is written to a temporary file next to the target and moved over it only once it is
+ * complete, so a failed or interrupted run leaves the previous catalog in place.
+ * <p>
+ * Each course starts on a new page. Formatting comes from the named styles of a {@link DocumentTemplate},
+ * so the document only references styles instead of repeating run formatting.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     try (CatalogWriter catalog = CatalogWriter.open(Paths.get("./output/Catalog.docx"))) {
+ *         for (CourseRecord record : records) {
+ *             catalog.append(record);
+ *         }
+ *     }
+ * </pre>
+ */
+public class CatalogWriter implements Closeable {
+
+    static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    static final String R_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String HYPERLINK_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/hyperlink";
+    private static final XMLOutputFactory XML_OUTPUT = XMLOutputFactory.newInstance();
+    private static final Fragment EMPTY = new Fragment(new byte[0], new ArrayList<String[]>());
+
+    private final Path target;
+    private final Path partial;
+    private final DocumentTemplate template;
+    private final ZipOutputStream zip;
+    private final Path relationshipSpool;
+    private final Writer relationships;
+    private final ExecutorService renderers;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Map<Long, Fragment> rendered = new ConcurrentHashMap<>();
+    private long nextToSubmit;
+    private long nextToWrite;
+    private volatile Exception failure;
+    private boolean closed;
+
+    /**
+     * A rendered course: its document.xml fragment and the hyperlink targets it references.
+     */
+    static final class Fragment {
+        final byte[] xml;
+        final List<String[]> links;
+
+        Fragment(byte[] xml, List<String[]> links) {
+            this.xml = xml;
+            this.links = links;
+        }
+    }
+
+    /**
+     * Creates the catalog file with the configured {@link DocumentTemplate} and writes the package header.
+     *
+     * @param target         the .docx file to create or replace on {@link #close()}; parent directories are created.
+     * @param renderThreads  the number of threads rendering courses in parallel.
+     * @param maxInFlight    the maximum number of courses rendered but not yet written.
+     * @throws IOException if the file cannot be created or the template cannot be read.
+     */
+    public CatalogWriter(Path target, int renderThreads, int maxInFlight) throws IOException {
+        this(target, DocumentTemplate.getDefault(), renderThreads, maxInFlight);
+    }
+
+    /**
+     * Creates the catalog file and writes the package header.
+     *
+     * @param target         the .docx file to create or replace on {@link #close()}; parent directories are created.
+     * @param template       the template providing styles, numbering and page setup.
+     * @param renderThreads  the number of threads rendering courses in parallel.
+     * @param maxInFlight    the maximum number of courses rendered but not yet written.
+     * @throws IOException if the file cannot be created.
+     */
+    public CatalogWriter(Path target, DocumentTemplate template, int renderThreads, int maxInFlight) throws IOException {
+        this.target = target;
+        this.template = template;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.partial = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024));
+        this.relationshipSpool = Files.createTempFile("catalog-rels", ".xml");
+        this.relationships = Files.newBufferedWriter(relationshipSpool, StandardCharsets.UTF_8);
+        this.renderers = Executors.newFixedThreadPool(Math.max(1, renderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new Semaphore(this.maxInFlight);
+
+        for (Map.Entry<String, byte[]> part : template.getParts().entrySet()) {
+            zip.putNextEntry(new ZipEntry(part.getKey()));
+            zip.write(part.getValue());
+            zip.closeEntry();
+        }
+        zip.putNextEntry(new ZipEntry("word/document.xml"));
+        zip.write((template.getDocumentStart() + "<w:body>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a catalog writer configured from configs.properties ({@code catalog.renderThreads},
+     * default the number of CPUs, and {@code catalog.maxInFlight}).
+     *
+     * @param target the .docx file to create.
+     * @return the writer.
+     * @throws IOException if the file cannot be created.
+     */
+    public static CatalogWriter open(Path target) throws IOException {
+        ConfigService config = ConfigService.getInstance();
+        int threads = config.getInt("catalog.renderThreads", Runtime.getRuntime().availableProcessors());
+        int maxInFlight = config.getInt("catalog.maxInFlight", threads * 4);
+        return new CatalogWriter(target, threads, maxInFlight);
+    }
+
+    /**
+     * Queues a course for rendering. Blocks while {@code maxInFlight} courses are waiting to be written.
+     *
+     * @param record the course to add after the previously appended ones.
+     * @throws IOException if an earlier course could not be rendered or written.
+     */
+    public void append(CourseRecord record) throws IOException {
+        checkFailure();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to append " + record.getLink(), e);
+        }
+        final long sequence;
+        synchronized (this) {
+            if (closed) {
+                inFlight.release();
+                throw new IOException("Catalog " + target + " is already closed");
+            }
+            sequence = nextToSubmit++;
+        }
+        renderers.execute(() -> {
+            Fragment fragment;
+            try {
+                fragment = render(record, sequence, template);
+            } catch (Exception e) {
+                failure = e;
+                // Keep the sequence moving so later courses and close() are not blocked
+                fragment = EMPTY;
+            }
+            rendered.put(sequence, fragment);
+            drain();
+        });
+    }
+
+    /**
+     * Waits for every appended course, then finishes the .docx file and moves it over the target.
+     *
+     * @throws IOException if a course could not be rendered or the file could not be written; the target
+     *                     is left unchanged then.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            inFlight.acquireUninterruptibly(maxInFlight);
+            renderers.shutdown();
+            checkFailure();
+
+            synchronized (this) {
+                zip.write((template.getSectionProperties() + "</w:body></w:document>").getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+
+                relationships.close();
+                zip.putNextEntry(new ZipEntry("word/_rels/document.xml.rels"));
+                zip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                        + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                        + template.getDocumentRelationships()).getBytes(StandardCharsets.UTF_8));
+                Files.copy(relationshipSpool, zip);
+                zip.write("</Relationships>".getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.close();
+            try {
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("Catalog created: " + target + " (" + nextToWrite + " courses)");
+        } finally {
+            renderers.shutdownNow();
+            relationships.close();
+            zip.close();
+            Files.deleteIfExists(relationshipSpool);
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Writes rendered courses in sequence order for as long as the next one is ready. After a failure
+     * the remaining fragments are only discarded, so every waiting caller is released.
+     */
+    private synchronized void drain() {
+        Fragment fragment;
+        while ((fragment = rendered.remove(nextToWrite)) != null) {
+            if (failure == null) {
+                try {
+                    zip.write(fragment.xml);
+                    for (String[] link : fragment.links) {
+                        relationships.write("<Relationship Id=\"" + link[0] + "\" Type=\"" + HYPERLINK_TYPE
+                                + "\" Target=\"" + escapeAttribute(link[1]) + "\" TargetMode=\"External\"/>");
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            nextToWrite++;
+            inFlight.release();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Exception e = failure;
+        if (e != null) {
+            throw e instanceof IOException ? (IOException) e : new IOException("Could not render catalog course", e);
+        }
+    }
+
+    /**
+     * Renders one course into body paragraphs that reference the template's styles.
+     * Relationship ids embed the sequence number, so fragments can be rendered independently.
+     */
+    static Fragment render(CourseRecord record, long sequence, DocumentTemplate template) throws XMLStreamException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        XMLStreamWriter xml = XML_OUTPUT.createXMLStreamWriter(bytes, "UTF-8");
+        List<String[]> links = new ArrayList<>();
+        CourseSnapshot snapshot = record.getSnapshot();
+
+        // Every course after the first starts on a new page
+        paragraph(xml, template, "title", template.getTitleStyle(), sequence > 0, snapshot.getName());
+        paragraph(xml, template, null, null, false, snapshot.getDescription());
+
+        heading(xml, template, "What'll you learn");
+        for (String outcome : snapshot.getLearningOutcomes()) {
+            bullet(xml, template, outcome);
+        }
+
+        if (!snapshot.getInstructors().isEmpty()) {
+            heading(xml, template, "Instructor");
+            for (Map.Entry<String, String> instructor : snapshot.getInstructors().entrySet()) {
+                startParagraph(xml, template.getBulletStyle(), false);
+                run(xml, template.getStrongStyle(), template.getFallback("strong"),
+                        bulletPrefix(template) + instructor.getKey() + ": ");
+                run(xml, null, null, instructor.getValue());
+                xml.writeEndElement();
+            }
+        }
+
+        heading(xml, template, "Course Detail");
+        for (Map.Entry<String, Map<String, String>> section : record.getOutline().entrySet()) {
+            paragraph(xml, template, "section", template.getSectionStyle(), false, section.getKey());
+            for (Map.Entry<String, String> lesson : section.getValue().entrySet()) {
+                hyperlink(xml, template, lesson.getKey(), lesson.getValue(), sequence, links);
+            }
+        }
+
+        heading(xml, template, "Course Duration");
+        bullet(xml, template, snapshot.getDuration());
+
+        heading(xml, template, "Course Link");
+        hyperlink(xml, template, record.getLink(), record.getLink(), sequence, links);
+
+        xml.flush();
+        xml.close();
+        return new Fragment(bytes.toByteArray(), links);
+    }
+
+    /**
+     * Writes a paragraph with one run; when the template lacks the role's style, the run carries the
+     * role's inline formatting instead.
+     */
+    private static void paragraph(XMLStreamWriter xml, DocumentTemplate template, String role, String style,
+                                  boolean pageBreakBefore, String text) throws XMLStreamException {
+        startParagraph(xml, style, pageBreakBefore);
+        run(xml, null, role == null ? null : template.getFallback(role), text);
+        xml.writeEndElement();
+    }
+
+    private static void heading(XMLStreamWriter xml, DocumentTemplate template, String text) throws XMLStreamException {
+        paragraph(xml, template, "heading", template.getHeadingStyle(), false, text);
+    }
+
+    private static void bullet(XMLStreamWriter xml, DocumentTemplate template, String text) throws XMLStreamException {
+        paragraph(xml, template, null, template.getBulletStyle(), false, bulletPrefix(template) + (text == null ? "" : text));
+    }
+
+    private static void hyperlink(XMLStreamWriter xml, DocumentTemplate template, String text, String url,
+                                  long sequence, List<String[]> links) throws XMLStreamException {
+        startParagraph(xml, template.getBulletStyle(), false);
+        String label = bulletPrefix(template) + (text == null ? "" : text);
+        if (url == null || url.trim().isEmpty()) {
+            run(xml, null, null, label);
+        } else {
+            String id = "rIdC" + sequence + "L" + links.size();
+            links.add(new String[]{id, url});
+            xml.writeStartElement("w", "hyperlink", W_NS);
+            xml.writeAttribute("r", R_NS, "id", id);
+            run(xml, template.getLinkStyle(), template.getFallback("link"), label);
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+    }
+
+    /**
+     * Bulleted paragraphs get their bullet from the template's list style; without one, a dash is written.
+     */
+    private static String bulletPrefix(DocumentTemplate template) {
+        return template.getBulletStyle() == null ? "- " : "";
+    }
+
+    private static void startParagraph(XMLStreamWriter xml, String style, boolean pageBreakBefore) throws XMLStreamException {
+        xml.writeStartElement("w", "p", W_NS);
+        if (style != null || pageBreakBefore) {
+            xml.writeStartElement("w", "pPr", W_NS);
+            if (style != null) {
+                xml.writeEmptyElement("w", "pStyle", W_NS);
+                xml.writeAttribute("w", W_NS, "val", style);
+            }
+            if (pageBreakBefore) {
+                xml.writeEmptyElement("w", "pageBreakBefore", W_NS);
+            }
+            xml.writeEndElement();
+        }
+    }
+
+    private static void run(XMLStreamWriter xml, String characterStyle, DocumentTemplate.RunFormat fallback, String text)
+            throws XMLStreamException {
+        xml.writeStartElement("w", "r", W_NS);
+        if (characterStyle != null) {
+            xml.writeStartElement("w", "rPr", W_NS);
+            xml.writeEmptyElement("w", "rStyle", W_NS);
+            xml.writeAttribute("w", W_NS, "val", characterStyle);
+            xml.writeEndElement();
+        } else if (fallback != null) {
+            // Child order of w:rPr is fixed by the schema: b, color, sz, u
+            xml.writeStartElement("w", "rPr", W_NS);
+            if (fallback.bold) {
+                xml.writeEmptyElement("w", "b", W_NS);
+            }
+            if (fallback.color != null) {
+                xml.writeEmptyElement("w", "color", W_NS);
+                xml.writeAttribute("w", W_NS, "val", fallback.color);
+            }
+            if (fallback.halfPoints > 0) {
+                xml.writeEmptyElement("w", "sz", W_NS);
+                xml.writeAttribute("w", W_NS, "val", String.valueOf(fallback.halfPoints));
+            }
+            if (fallback.underline) {
+                xml.writeEmptyElement("w", "u", W_NS);
+                xml.writeAttribute("w", W_NS, "val", "single");
+            }
+            xml.writeEndElement();
+        }
+        xml.writeStartElement("w", "t", W_NS);
+        xml.writeAttribute("xml:space", "preserve");
+        xml.writeCharacters(text == null ? "" : stripInvalidXml(text));
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    /**
+     * Drops characters that XML 1.0 does not allow (e.g. stray control characters in scraped text).
+     */
+    static String stripInvalidXml(String text) {
+        StringBuilder clean = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean valid = c == '\t' || c == '\n' || c == '\r' || c >= 0x20 && c != 0xFFFE && c != 0xFFFF;
+            if (!valid && clean == null) {
+                clean = new StringBuilder(text.length()).append(text, 0, i);
+            } else if (valid && clean != null) {
+                clean.append(c);
+            }
+        }
+        return clean == null ? text : clean.toString();
+    }
+
+    static String escapeAttribute(String value) {
+        return stripInvalidXml(value).replace("&", "&amp;").replace("\"", "&quot;")
+                .replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -1,9 +1,11 @@
 package DocGenerate;
 
-import org.apache.poi.xwpf.usermodel.*;
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,7 +15,8 @@ import java.util.Map;
  * structured course information, such as title, description, learning outcomes, instructor,
  * course outline, duration, and links.
  *
- * This class uses Apache POI library to create and style Word documents.
+ * Formatting comes from the named styles of the cached {@link DocumentTemplate} (configured with
+ * {@code docTemplate.path}), so each document references styles instead of repeating run formatting.
  */
 public class DocGenerate {
 
@@ -32,135 +35,39 @@ public class DocGenerate {
      *                 </ul>
      * @param filePath The path where the generated Word document will be saved (e.g., "./output.docx").
      */
+    @SuppressWarnings("unchecked")
     public static void createDocument(LinkedHashMap<String, Object> data, String filePath) {
-        // Create new doc
-        XWPFDocument document = new XWPFDocument();
-
-        // Create title and format
-        String title = (String) data.get("Title");
-        XWPFParagraph titleParagraph = document.createParagraph();
-        XWPFRun titleRun = titleParagraph.createRun();
-        titleRun.setText(title);
-        titleRun.setBold(true);
-        titleRun.setFontSize(18);
-        titleRun.addBreak();
-
-        // Add Description
-        String description = (String) data.get("Description");
-        XWPFParagraph descriptionParagraph = document.createParagraph();
-        XWPFRun descriptionRun = descriptionParagraph.createRun();
-        descriptionRun.setText(description);
-        descriptionRun.addBreak();
-
-        // Add "What'll you learn"
-        String learnHeader = "What'll you learn";
-        XWPFParagraph learnHeaderParagraph = document.createParagraph();
-        XWPFRun learnHeaderRun = learnHeaderParagraph.createRun();
-        learnHeaderRun.setBold(true);
-        learnHeaderRun.setFontSize(16);
-        learnHeaderRun.setText(learnHeader);
-        learnHeaderRun.addBreak();
-
-        LinkedHashMap<String, Object> learnList = (LinkedHashMap<String, Object>) data.get("What'll you learn");
-        for (Map.Entry<String, Object> entry : learnList.entrySet()) {
-            List<?> learnItem = (List<?>) entry.getValue();
-            for (Object value : learnItem) {
-                XWPFParagraph learnItemParagraph = document.createParagraph();
-                XWPFRun learnItemRun = learnItemParagraph.createRun();
-                learnItemRun.setText("- " + value);
-            }
-        }
-
-        // Add "Instructor"
-        LinkedHashMap<String, String> instructor = (LinkedHashMap<String, String>) data.get("Instructor");
-        if (instructor != null) {
-            String instructorHeader = "Instructor";
-            XWPFParagraph instructorHeaderParagraph = document.createParagraph();
-            XWPFRun instructorHeaderRun = instructorHeaderParagraph.createRun();
-            instructorHeaderRun.addBreak();
-            instructorHeaderRun.setBold(true);
-            instructorHeaderRun.setFontSize(16);
-            instructorHeaderRun.setText(instructorHeader);
-            instructorHeaderRun.addBreak();
-
-            for (Map.Entry<String, String> entry : instructor.entrySet()) {
-                String instructorItem = entry.getKey();
-                String instructorValue = entry.getValue();
-
-                XWPFParagraph instructorParagraph = document.createParagraph();
-                XWPFRun instructorRun = instructorParagraph.createRun();
-                instructorRun.setBold(true);
-                instructorRun.setText("- " + instructorItem + ": ");
-                instructorRun.setText(instructorValue);
-                instructorRun.addBreak();
+        // Flatten the sections into a record; the template supplies all formatting
+        List<String> outcomes = new ArrayList<>();
+        Map<String, Object> learnList = (Map<String, Object>) data.get("What'll you learn");
+        if (learnList != null) {
+            for (Object learnItem : learnList.values()) {
+                for (Object value : (List<?>) learnItem) {
+                    outcomes.add(String.valueOf(value));
+                }
             }
         }
-
-        // Add "Course Detail"
-        String courseDetailHeader = "Course Detail";
-        XWPFParagraph courseDetailHeaderParagraph = document.createParagraph();
-        XWPFRun courseDetailHeaderRun = courseDetailHeaderParagraph.createRun();
-        courseDetailHeaderRun.setBold(true);
-        courseDetailHeaderRun.setFontSize(16);
-        courseDetailHeaderRun.setText(courseDetailHeader);
-        courseDetailHeaderRun.addBreak();
-
-        LinkedHashMap<String, Object> courseDetail = (LinkedHashMap<String, Object>) data.get("CourseDetail");
-        for (Map.Entry<String, Object> entry : courseDetail.entrySet()) {
-            String CourseOutLineTitle = entry.getKey();
-            XWPFParagraph CourseOutLineTitleParagraph = document.createParagraph();
-            XWPFRun CourseOutLineRun = CourseOutLineTitleParagraph.createRun();
-            CourseOutLineRun.setFontSize(14);
-            CourseOutLineRun.setText(CourseOutLineTitle);
-            CourseOutLineRun.addBreak();
-
-            LinkedHashMap<String, String> courseDetailOutLine = (LinkedHashMap<String, String>) entry.getValue();
-            for (Map.Entry<String, String> entrydetail : courseDetailOutLine.entrySet()) {
-                String CourseOutLineText = entrydetail.getKey();
-                String CourseOutLineLink = entrydetail.getValue();
-                XWPFParagraph CourseOutLineParagraph = document.createParagraph();
-                XWPFHyperlinkRun courseOutLineLink = CourseOutLineParagraph.createHyperlinkRun(CourseOutLineLink);
-                courseOutLineLink.setText("- " + CourseOutLineText);
-                courseOutLineLink.addBreak();
+        Map<String, String> instructor = (Map<String, String>) data.get("Instructor");
+        CourseSnapshot snapshot = new CourseSnapshot((String) data.get("Title"), (String) data.get("Description"),
+                (String) data.get("CourseDuration"), outcomes,
+                instructor == null ? new LinkedHashMap<String, String>() : instructor);
+
+        LinkedHashMap<String, Map<String, String>> outline = new LinkedHashMap<>();
+        Map<String, Object> courseDetail = (Map<String, Object>) data.get("CourseDetail");
+        if (courseDetail != null) {
+            for (Map.Entry<String, Object> entry : courseDetail.entrySet()) {
+                outline.put(entry.getKey(), (Map<String, String>) entry.getValue());
             }
         }
-
-        // Add "Course Duration"
-        String courseDurationHeader = "Course Duration";
-        XWPFParagraph courseDurationHeaderParagraph = document.createParagraph();
-        XWPFRun courseDurationHeaderRun = courseDurationHeaderParagraph.createRun();
-        courseDurationHeaderRun.setBold(true);
-        courseDurationHeaderRun.setFontSize(16);
-        courseDurationHeaderRun.setText(courseDurationHeader);
-        courseDurationHeaderRun.addBreak();
-
-        String courseDuration = (String) data.get("CourseDuration");
-        XWPFParagraph courseDurationParagraph = document.createParagraph();
-        XWPFRun courseDurationRun = courseDurationParagraph.createRun();
-        courseDurationRun.setText("- " + courseDuration);
-        courseDurationRun.addBreak();
-
-        // Add "Course Link"
-        String courseLinkHeader = "Course Link";
-        XWPFParagraph courseLinkHeaderParagraph = document.createParagraph();
-        XWPFRun courseLinkHeaderRun = courseLinkHeaderParagraph.createRun();
-        courseLinkHeaderRun.setBold(true);
-        courseLinkHeaderRun.setFontSize(16);
-        courseLinkHeaderRun.setText(courseLinkHeader);
-        courseLinkHeaderRun.addBreak();
-
-        String courseLink = (String) data.get("CourseLink");
-        XWPFParagraph courseLinkParagraph = document.createParagraph();
-        XWPFHyperlinkRun courseLinkRun = courseLinkParagraph.createHyperlinkRun(courseLink);
-        courseLinkRun.setText("- " + courseLink);
-        courseLinkRun.addBreak();
+        CourseRecord record = new CourseRecord((String) data.get("CourseLink"), snapshot, outline);
 
         // Save to file
-        try (FileOutputStream outputStream = new FileOutputStream(filePath)) {
-            document.write(outputStream);
-            System.out.println("Document created successfully!");
+        try (CatalogWriter writer = new CatalogWriter(Paths.get(filePath), DocumentTemplate.getDefault(), 1, 1)) {
+            writer.append(record);
         } catch (IOException e) {
             System.out.println("Error creating document: " + e.getMessage());
+            return;
         }
+        System.out.println("Document created successfully!");
     }
 }
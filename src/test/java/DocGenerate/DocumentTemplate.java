@@ -0,0 +1,411 @@
+package DocGenerate;
+
+import properties.PropertiesFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A styled .docx template, parsed once and reused for every generated document.
+ * <p>
+ * The template's parts (styles, numbering, theme, fonts, settings, headers and footers) are kept as
+ * raw bytes and copied into each output package unchanged; only {@code word/document.xml} is generated.
+ * The styles the renderer needs are resolved by name once, when the template is loaded, so rendering a
+ * course only references style ids ({@code w:pStyle}, {@code w:rStyle}) instead of repeating inline
+ * formatting on every run.
+ * <p>
+ * The template is read from {@code docTemplate.path}; without it a built-in template with the styles
+ * Title, heading 1, heading 2, List Bullet, Strong and Hyperlink is used. The style names looked up
+ * can be changed with {@code docTemplate.style.<role>} (title, heading, section, bullet, strong, link).
+ * When the template lacks one of them, its runs get equivalent inline formatting ({@code w:rPr}: bold,
+ * size, link color) instead, see {@link #getFallback(String)}; a missing list style gives "- " items.
+ */
+public final class DocumentTemplate {
+
+    private static final Map<String, DocumentTemplate> cache = new ConcurrentHashMap<>();
+    private static final Pattern DOCUMENT_ROOT = Pattern.compile("<w:document\\s[^>]*>");
+    private static final Pattern SECTION_PROPERTIES = Pattern.compile("(<w:sectPr[\\s>][\\s\\S]*?</w:sectPr>)\\s*</w:body>");
+    private static final String DOCUMENT_MAIN = "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml";
+    private static final String TEMPLATE_MAIN = "application/vnd.openxmlformats-officedocument.wordprocessingml.template.main+xml";
+    private static final String HYPERLINK_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/hyperlink";
+
+    private final Map<String, byte[]> parts;
+    private final String documentRelationships;
+    private final String documentStart;
+    private final String sectionProperties;
+    private final String title;
+    private final String heading;
+    private final String section;
+    private final String bullet;
+    private final String strong;
+    private final String link;
+    private final Map<String, RunFormat> fallbacks = new HashMap<>();
+
+    /**
+     * Inline run formatting that stands in for a style the template does not define.
+     */
+    static final class RunFormat {
+        final boolean bold;
+        /** Font size in half points, or 0 to keep the paragraph's size. */
+        final int halfPoints;
+        /** RGB hex color, or null. */
+        final String color;
+        final boolean underline;
+
+        RunFormat(boolean bold, int halfPoints, String color, boolean underline) {
+            this.bold = bold;
+            this.halfPoints = halfPoints;
+            this.color = color;
+            this.underline = underline;
+        }
+    }
+
+    private static final Map<String, RunFormat> DIRECT_FORMATTING = new HashMap<>();
+
+    static {
+        DIRECT_FORMATTING.put("title", new RunFormat(true, 56, null, false));
+        DIRECT_FORMATTING.put("heading", new RunFormat(true, 32, null, false));
+        DIRECT_FORMATTING.put("section", new RunFormat(true, 26, null, false));
+        DIRECT_FORMATTING.put("strong", new RunFormat(true, 0, null, false));
+        DIRECT_FORMATTING.put("link", new RunFormat(false, 0, "0563C1", true));
+    }
+
+    private DocumentTemplate(Map<String, byte[]> parts, String documentRelationships, String documentStart,
+                             String sectionProperties, Map<String, String> styleIds) {
+        this.parts = Collections.unmodifiableMap(parts);
+        this.documentRelationships = documentRelationships;
+        this.documentStart = documentStart;
+        this.sectionProperties = sectionProperties;
+        this.title = resolve(styleIds, "title", "Title");
+        this.heading = resolve(styleIds, "heading", "heading 1");
+        this.section = resolve(styleIds, "section", "heading 2");
+        this.bullet = resolve(styleIds, "bullet", "List Bullet");
+        this.strong = resolve(styleIds, "strong", "Strong");
+        this.link = resolve(styleIds, "link", "Hyperlink");
+    }
+
+    /**
+     * Returns the template configured by {@code docTemplate.path}, loading it on first use.
+     *
+     * @return the cached template.
+     * @throws IOException if the configured template cannot be read.
+     */
+    public static DocumentTemplate getDefault() throws IOException {
+        String path = PropertiesFile.getPropValue("docTemplate.path", "");
+        return path.isEmpty() ? builtIn() : load(Paths.get(path));
+    }
+
+    /**
+     * Returns the template stored in a .docx or .dotx file, parsing it only once per JVM.
+     *
+     * @param file the template file.
+     * @return the cached template.
+     * @throws IOException if the file cannot be read or is not a Word document.
+     */
+    public static DocumentTemplate load(Path file) throws IOException {
+        String key = file.toAbsolutePath().normalize().toString();
+        DocumentTemplate template = cache.get(key);
+        if (template == null) {
+            template = parse(Files.readAllBytes(file), file.toString());
+            DocumentTemplate existing = cache.putIfAbsent(key, template);
+            template = existing != null ? existing : template;
+        }
+        return template;
+    }
+
+    /**
+     * Returns the built-in template.
+     *
+     * @return the cached built-in template.
+     */
+    public static DocumentTemplate builtIn() {
+        return cache.computeIfAbsent("<built-in>", key -> {
+            Map<String, byte[]> parts = new LinkedHashMap<>();
+            parts.put("[Content_Types].xml", BUILT_IN_CONTENT_TYPES.getBytes(StandardCharsets.UTF_8));
+            parts.put("_rels/.rels", BUILT_IN_PACKAGE_RELATIONSHIPS.getBytes(StandardCharsets.UTF_8));
+            parts.put("word/styles.xml", BUILT_IN_STYLES.getBytes(StandardCharsets.UTF_8));
+            parts.put("word/numbering.xml", BUILT_IN_NUMBERING.getBytes(StandardCharsets.UTF_8));
+            try {
+                return new DocumentTemplate(parts, BUILT_IN_DOCUMENT_RELATIONSHIPS, BUILT_IN_DOCUMENT_START,
+                        BUILT_IN_SECTION_PROPERTIES, readStyleIds(parts.get("word/styles.xml")));
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("Built-in styles are invalid", e);
+            }
+        });
+    }
+
+    private static DocumentTemplate parse(byte[] docx, String source) throws IOException {
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        String document = null;
+        String relationships = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                byte[] content = readAll(zip);
+                if ("word/document.xml".equals(entry.getName())) {
+                    document = new String(content, StandardCharsets.UTF_8);
+                } else if ("word/_rels/document.xml.rels".equals(entry.getName())) {
+                    relationships = new String(content, StandardCharsets.UTF_8);
+                } else if (!entry.isDirectory()) {
+                    parts.put(entry.getName(), content);
+                }
+            }
+        }
+        if (document == null || !parts.containsKey("[Content_Types].xml")) {
+            throw new IOException(source + " is not a Word document");
+        }
+        // A .dotx declares its main part as a template; the generated files are documents
+        parts.put("[Content_Types].xml", new String(parts.get("[Content_Types].xml"), StandardCharsets.UTF_8)
+                .replace(TEMPLATE_MAIN, DOCUMENT_MAIN).getBytes(StandardCharsets.UTF_8));
+
+        // Keep the template's root element so every namespace its section properties use stays declared
+        Matcher root = DOCUMENT_ROOT.matcher(document);
+        String documentStart = root.find()
+                ? "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" + root.group()
+                : BUILT_IN_DOCUMENT_START;
+        if (!documentStart.contains("xmlns:r=")) {
+            documentStart = documentStart.replaceFirst("<w:document", "<w:document xmlns:r=\"" + CatalogWriter.R_NS + "\"");
+        }
+        Matcher sectPr = SECTION_PROPERTIES.matcher(document);
+        String sectionProperties = sectPr.find() ? sectPr.group(1) : BUILT_IN_SECTION_PROPERTIES;
+        try {
+            return new DocumentTemplate(parts, relationships == null ? "" : keepRelationships(relationships),
+                    documentStart, sectionProperties, parts.containsKey("word/styles.xml")
+                            ? readStyleIds(parts.get("word/styles.xml"))
+                            : Collections.<String, String>emptyMap());
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the package parts copied into every generated document, keyed by part name.
+     *
+     * @return the parts, including [Content_Types].xml and _rels/.rels.
+     */
+    Map<String, byte[]> getParts() {
+        return parts;
+    }
+
+    /**
+     * Gets the template's own document relationships (styles, numbering, headers...), without hyperlinks.
+     *
+     * @return the Relationship elements to put before the generated ones.
+     */
+    String getDocumentRelationships() {
+        return documentRelationships;
+    }
+
+    /**
+     * Gets the XML declaration and the opening w:document element of the template.
+     *
+     * @return the start of document.xml, before w:body.
+     */
+    String getDocumentStart() {
+        return documentStart;
+    }
+
+    /**
+     * Gets the page setup of the template.
+     *
+     * @return the final w:sectPr element of the template body.
+     */
+    String getSectionProperties() {
+        return sectionProperties;
+    }
+
+    String getTitleStyle() {
+        return title;
+    }
+
+    String getHeadingStyle() {
+        return heading;
+    }
+
+    String getSectionStyle() {
+        return section;
+    }
+
+    /**
+     * @return the bulleted list paragraph style, or null if the template has none (items get a "- " prefix).
+     */
+    String getBulletStyle() {
+        return bullet;
+    }
+
+    String getStrongStyle() {
+        return strong;
+    }
+
+    String getLinkStyle() {
+        return link;
+    }
+
+    /**
+     * Gets the inline formatting for the runs of a role whose style the template lacks.
+     *
+     * @param role the role: title, heading, section, strong or link.
+     * @return the formatting, or null if the template has the style.
+     */
+    RunFormat getFallback(String role) {
+        return fallbacks.get(role);
+    }
+
+    private String resolve(Map<String, String> styleIds, String role, String defaultName) {
+        String name = PropertiesFile.getPropValue("docTemplate.style." + role, defaultName);
+        String id = styleIds.get(normalize(name));
+        if (id == null) {
+            System.out.println("Template has no style '" + name + "' for " + role + ", using direct formatting");
+            if (DIRECT_FORMATTING.containsKey(role)) {
+                fallbacks.put(role, DIRECT_FORMATTING.get(role));
+            }
+        }
+        return id;
+    }
+
+    private static String normalize(String styleName) {
+        return styleName.replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Maps every style's name and id (normalized) to its id.
+     */
+    private static Map<String, String> readStyleIds(byte[] stylesXml) throws XMLStreamException {
+        Map<String, String> ids = new HashMap<>();
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(stylesXml));
+        String currentId = null;
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if ("style".equals(reader.getLocalName())) {
+                    currentId = reader.getAttributeValue(CatalogWriter.W_NS, "styleId");
+                    if (currentId != null) {
+                        ids.put(normalize(currentId), currentId);
+                    }
+                } else if ("name".equals(reader.getLocalName()) && currentId != null) {
+                    String name = reader.getAttributeValue(CatalogWriter.W_NS, "val");
+                    if (name != null) {
+                        ids.put(normalize(name), currentId);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Keeps every Relationship element of the template's document except hyperlinks, which belong to
+     * the template's own content.
+     */
+    private static String keepRelationships(String relationships) {
+        StringBuilder kept = new StringBuilder();
+        Matcher relationship = Pattern.compile("<Relationship\\s[^>]*?/>").matcher(relationships);
+        while (relationship.find()) {
+            if (!relationship.group().contains(HYPERLINK_TYPE)) {
+                kept.append(relationship.group());
+            }
+        }
+        return kept.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static final String W = "xmlns:w=\"" + CatalogWriter.W_NS + "\"";
+
+    private static final String BUILT_IN_CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\"" + DOCUMENT_MAIN + "\"/>"
+            + "<Override PartName=\"/word/styles.xml\" "
+            + "ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.styles+xml\"/>"
+            + "<Override PartName=\"/word/numbering.xml\" "
+            + "ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.numbering+xml\"/>"
+            + "</Types>";
+
+    private static final String BUILT_IN_PACKAGE_RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" "
+            + "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" "
+            + "Target=\"word/document.xml\"/>"
+            + "</Relationships>";
+
+    private static final String BUILT_IN_DOCUMENT_RELATIONSHIPS =
+            "<Relationship Id=\"rIdStyles\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" "
+                    + "Target=\"styles.xml\"/>"
+                    + "<Relationship Id=\"rIdNumbering\" "
+                    + "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/numbering\" "
+                    + "Target=\"numbering.xml\"/>";
+
+    private static final String BUILT_IN_DOCUMENT_START = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<w:document " + W + " xmlns:r=\"" + CatalogWriter.R_NS + "\">";
+
+    private static final String BUILT_IN_SECTION_PROPERTIES = "<w:sectPr><w:pgSz w:w=\"12240\" w:h=\"15840\"/>"
+            + "<w:pgMar w:top=\"1440\" w:right=\"1440\" w:bottom=\"1440\" w:left=\"1440\" "
+            + "w:header=\"720\" w:footer=\"720\" w:gutter=\"0\"/></w:sectPr>";
+
+    private static final String BUILT_IN_STYLES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<w:styles " + W + ">"
+            + "<w:docDefaults><w:rPrDefault><w:rPr><w:rFonts w:ascii=\"Calibri\" w:hAnsi=\"Calibri\" w:cs=\"Calibri\"/>"
+            + "<w:sz w:val=\"22\"/><w:szCs w:val=\"22\"/></w:rPr></w:rPrDefault>"
+            + "<w:pPrDefault><w:pPr><w:spacing w:after=\"120\"/></w:pPr></w:pPrDefault></w:docDefaults>"
+            + "<w:style w:type=\"paragraph\" w:default=\"1\" w:styleId=\"Normal\"><w:name w:val=\"Normal\"/><w:qFormat/></w:style>"
+            + "<w:style w:type=\"paragraph\" w:styleId=\"Title\"><w:name w:val=\"Title\"/><w:basedOn w:val=\"Normal\"/>"
+            + "<w:next w:val=\"Normal\"/><w:qFormat/><w:pPr><w:spacing w:after=\"240\"/></w:pPr>"
+            + "<w:rPr><w:b/><w:sz w:val=\"36\"/><w:szCs w:val=\"36\"/></w:rPr></w:style>"
+            + "<w:style w:type=\"paragraph\" w:styleId=\"Heading1\"><w:name w:val=\"heading 1\"/><w:basedOn w:val=\"Normal\"/>"
+            + "<w:next w:val=\"Normal\"/><w:qFormat/><w:pPr><w:keepNext/><w:spacing w:before=\"240\" w:after=\"120\"/>"
+            + "<w:outlineLvl w:val=\"0\"/></w:pPr><w:rPr><w:b/><w:sz w:val=\"32\"/><w:szCs w:val=\"32\"/></w:rPr></w:style>"
+            + "<w:style w:type=\"paragraph\" w:styleId=\"Heading2\"><w:name w:val=\"heading 2\"/><w:basedOn w:val=\"Normal\"/>"
+            + "<w:next w:val=\"Normal\"/><w:qFormat/><w:pPr><w:keepNext/><w:spacing w:before=\"120\" w:after=\"60\"/>"
+            + "<w:outlineLvl w:val=\"1\"/></w:pPr><w:rPr><w:sz w:val=\"28\"/><w:szCs w:val=\"28\"/></w:rPr></w:style>"
+            + "<w:style w:type=\"paragraph\" w:styleId=\"ListBullet\"><w:name w:val=\"List Bullet\"/><w:basedOn w:val=\"Normal\"/>"
+            + "<w:pPr><w:numPr><w:numId w:val=\"1\"/></w:numPr><w:spacing w:after=\"40\"/></w:pPr></w:style>"
+            + "<w:style w:type=\"character\" w:default=\"1\" w:styleId=\"DefaultParagraphFont\">"
+            + "<w:name w:val=\"Default Paragraph Font\"/><w:uiPriority w:val=\"1\"/><w:semiHidden/></w:style>"
+            + "<w:style w:type=\"character\" w:styleId=\"Strong\"><w:name w:val=\"Strong\"/>"
+            + "<w:basedOn w:val=\"DefaultParagraphFont\"/><w:qFormat/><w:rPr><w:b/></w:rPr></w:style>"
+            + "<w:style w:type=\"character\" w:styleId=\"Hyperlink\"><w:name w:val=\"Hyperlink\"/>"
+            + "<w:basedOn w:val=\"DefaultParagraphFont\"/><w:rPr><w:color w:val=\"0563C1\"/><w:u w:val=\"single\"/></w:rPr></w:style>"
+            + "</w:styles>";
+
+    private static final String BUILT_IN_NUMBERING = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<w:numbering " + W + ">"
+            + "<w:abstractNum w:abstractNumId=\"0\"><w:multiLevelType w:val=\"singleLevel\"/>"
+            + "<w:lvl w:ilvl=\"0\"><w:start w:val=\"1\"/><w:numFmt w:val=\"bullet\"/><w:lvlText w:val=\"\u2022\"/>"
+            + "<w:lvlJc w:val=\"left\"/><w:pPr><w:ind w:left=\"720\" w:hanging=\"360\"/></w:pPr></w:lvl></w:abstractNum>"
+            + "<w:num w:numId=\"1\"><w:abstractNumId w:val=\"0\"/></w:num>"
+            + "</w:numbering>";
+}
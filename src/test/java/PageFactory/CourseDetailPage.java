@@ -1,6 +1,7 @@
 package PageFactory;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
@@ -9,6 +10,7 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Page Object Model for the Course Detail Page.
@@ -17,7 +19,60 @@ import java.util.List;
  * including section names and their corresponding lessons or links.
  */
 public class CourseDetailPage {
-    static WebDriver driver;
+    private final WebDriver driver;
+
+    // Locator for the course outline sections
+    public static By div_CollapsibleTrigger = By.cssSelector("div.collapsible-trigger");
+
+    /**
+     * In-page script that expands every collapsed section, waits until the section bodies are rendered
+     * and serializes the whole outline as [{title, links: [{text, href}]}].
+     * <p>
+     * A section counts as rendered once its trigger is expanded and its body element exists, so an empty
+     * section does not hold the wait until the timeout. Links are only read from the section's own card;
+     * a trigger outside any card has no links.
+     * <p>
+     * arguments[0] is the maximum time in milliseconds to wait for expanded sections to render,
+     * the last argument is the async callback injected by Selenium.
+     */
+    private static final String OUTLINE_SCRIPT =
+            "var done = arguments[arguments.length - 1];" +
+            "var timeoutMs = arguments[0];" +
+            "var triggers = Array.prototype.slice.call(document.querySelectorAll('div.collapsible-trigger'));" +
+            "triggers.forEach(function (t) {" +
+            "  if (t.getAttribute('aria-expanded') === 'false') { t.click(); }" +
+            "});" +
+            "function sectionOf(t) {" +
+            "  return t.closest('.collapsible-card, .collapsible-basic, .collapsible');" +
+            "}" +
+            "function bodyOf(t) {" +
+            "  var id = t.getAttribute('aria-controls');" +
+            "  var body = id ? document.getElementById(id) : null;" +
+            "  var section = sectionOf(t);" +
+            "  return body || (section ? section.querySelector('.collapsible-body') : null);" +
+            "}" +
+            "function expanded() {" +
+            "  return triggers.every(function (t) {" +
+            "    return t.getAttribute('aria-expanded') !== 'false' && (sectionOf(t) === null || bodyOf(t) !== null);" +
+            "  });" +
+            "}" +
+            "function serialize() {" +
+            "  return triggers.map(function (t) {" +
+            "    var title = t.querySelector('.align-middle');" +
+            "    var section = sectionOf(t);" +
+            "    var links = section ? Array.prototype.slice.call(section.querySelectorAll('span.align-middle > a')) : [];" +
+            "    return {" +
+            "      title: (title ? title.innerText : t.innerText).trim()," +
+            "      links: links.map(function (a) { return {text: a.innerText.trim(), href: a.href}; })" +
+            "    };" +
+            "  });" +
+            "}" +
+            "if (expanded()) { done(serialize()); return; }" +
+            "var observer = new MutationObserver(function () {" +
+            "  if (expanded()) { observer.disconnect(); clearTimeout(timer); done(serialize()); }" +
+            "});" +
+            "var timer = setTimeout(function () { observer.disconnect(); done(serialize()); }, timeoutMs);" +
+            "observer.observe(document.body, {childList: true, subtree: true, attributes: true});";
 
     /**
      * Constructor for the CourseDetailPage.
@@ -25,7 +80,7 @@ public class CourseDetailPage {
      * @param driver the WebDriver instance to interact with the Course Detail page.
      */
     public CourseDetailPage(WebDriver driver){
-        CourseDetailPage.driver = driver;
+        this.driver = driver;
     }
 
     /**
@@ -77,4 +132,40 @@ public class CourseDetailPage {
             throw new Exception("Get the Course Duration Failed: Exception " + e);
         }
     }
+
+    /**
+     * Retrieves the whole course outline with a single in-page script.
+     * <p>
+     * Unlike {@link #getCourseOutline()}, which issues several WebDriver commands per section and link,
+     * this method waits once for the sections to appear, then expands every collapsed section and
+     * serializes all titles and links in one {@link JavascriptExecutor} round trip. Each section only
+     * contains the links rendered inside it.
+     *
+     * @return a LinkedHashMap where each key is a course section title (String),
+     *         and each value is a LinkedHashMap of subtopics (lesson title → URL).
+     * @throws Exception if the outline cannot be found or the script fails.
+     */
+    public LinkedHashMap<String, Object> extractCourseOutline() throws Exception {
+        try {
+            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(15));
+            wait.until(ExpectedConditions.presenceOfElementLocated(div_CollapsibleTrigger));
+
+            Object result = ((JavascriptExecutor) driver).executeAsyncScript(OUTLINE_SCRIPT, 10000);
+
+            LinkedHashMap<String, Object> courseOutLine = new LinkedHashMap<>();
+            for (Object sectionObject : (List<?>) result) {
+                Map<?, ?> section = (Map<?, ?>) sectionObject;
+                LinkedHashMap<String, String> courseSubOutline = new LinkedHashMap<>();
+                for (Object linkObject : (List<?>) section.get("links")) {
+                    Map<?, ?> link = (Map<?, ?>) linkObject;
+                    courseSubOutline.put((String) link.get("text"), (String) link.get("href"));
+                }
+                courseOutLine.put((String) section.get("title"), courseSubOutline);
+            }
+
+            return courseOutLine;
+        } catch (Exception e) {
+            throw new Exception("Get the Course Outline Failed: Exception " + e);
+        }
+    }
 }
@@ -1,17 +1,18 @@
 package PageFactory;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import ui.driver.ValidateUIHelpers;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
-
-import static java.lang.Thread.sleep;
+import java.util.Map;
 
 /**
  * Page Object Model representing the Course Page.
@@ -20,22 +21,64 @@ import static java.lang.Thread.sleep;
  * instructor details, learning outcomes, and perform interactions like enrollment.
  */
 public class CoursePage {
-    static WebDriver driver;
+    private final WebDriver driver;
+
+    // XPath expressions shared by the WebDriver locators and the in-page snapshot script
+    static final String XPATH_COURSE_NAME = "//*[@id=\"main-content\"]/div/div[1]/div/div[5]/div[1]/h1";
+    static final String XPATH_COURSE_DESCRIPTION = "//*[@class=\"p\"]";
+    static final String XPATH_COURSE_DURATION = "//*[@class=\"h4 mb-0\"]";
+    static final String XPATH_COURSE_LEARNER_EXPAND = "//*[@id=\"outcome\"]";
 
     // Locators for various elements on the course page
-    public static By txt_CourseName = By.xpath("//*[@id=\"main-content\"]/div/div[1]/div/div[5]/div[1]/h1");
-    public static By txt_CourseDescription = By.xpath("//*[@class=\"p\"]");
-    public static By txt_CourseDuration = By.xpath("//*[@class=\"h4 mb-0\"]");
-    public static By btn_CourseLearner_expand = By.xpath("//*[@id=\"outcome\"]");
+    public static By txt_CourseName = By.xpath(XPATH_COURSE_NAME);
+    public static By txt_CourseDescription = By.xpath(XPATH_COURSE_DESCRIPTION);
+    public static By txt_CourseDuration = By.xpath(XPATH_COURSE_DURATION);
+    public static By btn_CourseLearner_expand = By.xpath(XPATH_COURSE_LEARNER_EXPAND);
     public static By btn_Enroll = By.xpath("//*[@class=\"btn btn-brand w-100\"]");
 
+    /**
+     * In-page script that reads every course field at once.
+     * <p>
+     * Arguments: name, description, duration and learner-expand XPaths, then the maximum time in
+     * milliseconds to wait for the learner section to expand. The last argument is the async callback
+     * injected by Selenium. Calls back with {name, description, duration, outcomes, instructors}.
+     */
+    private static final String SNAPSHOT_SCRIPT =
+            "var done = arguments[arguments.length - 1];" +
+            "var args = arguments;" +
+            "function byXpath(xpath) {" +
+            "  return document.evaluate(xpath, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+            "}" +
+            "function text(node) { return node ? node.innerText : null; }" +
+            "function collect() {" +
+            "  var outcomes = Array.prototype.slice.call(document.querySelectorAll('.mt-2.html-data ul li'))" +
+            "      .map(function (li) { return li.innerText; });" +
+            "  var instructors = [];" +
+            "  document.querySelectorAll('.instructor-card').forEach(function (card) {" +
+            "    var h3 = card.querySelector('h3');" +
+            "    var spans = card.querySelectorAll('span');" +
+            "    if (h3 && spans.length > 1) { instructors.push({name: h3.innerText, title: spans[1].innerText}); }" +
+            "  });" +
+            "  return {name: text(byXpath(args[0])), description: text(byXpath(args[1])), duration: text(byXpath(args[2]))," +
+            "          outcomes: outcomes, instructors: instructors};" +
+            "}" +
+            "var expand = byXpath(args[3]);" +
+            "if (!expand || expand.innerText.indexOf('Show more') < 0) { done(collect()); return; }" +
+            "expand.click();" +
+            "if (expand.innerText.indexOf('Show less') >= 0) { done(collect()); return; }" +
+            "var observer = new MutationObserver(function () {" +
+            "  if (expand.innerText.indexOf('Show less') >= 0) { observer.disconnect(); clearTimeout(timer); done(collect()); }" +
+            "});" +
+            "var timer = setTimeout(function () { observer.disconnect(); done(collect()); }, args[4]);" +
+            "observer.observe(expand, {childList: true, subtree: true, characterData: true});";
+
     /**
      * Constructor for CoursePage.
      *
      * @param driver WebDriver instance for interacting with the course page.
      */
     public CoursePage(WebDriver driver){
-        CoursePage.driver = driver;
+        this.driver = driver;
     }
 
     /**
@@ -103,12 +146,12 @@ public class CoursePage {
             WebElement element = wait.until(ExpectedConditions.presenceOfElementLocated(btn_CourseLearner_expand));
             String text = element.getText();
 
-            if (text.contains("Show more"))
+            if (text.contains("Show more")) {
                 element.click();
 
-            // Wait for 'Show less' to confirm expansion is complete
-            while (text.contains("Show less"))
-                sleep(100);
+                // Wait for 'Show less' to confirm expansion is complete
+                new ValidateUIHelpers(driver).waitForTextContains(element, "Show less", Duration.ofSeconds(10));
+            }
 
             List<WebElement> liElements = driver.findElements(By.cssSelector(".mt-2.html-data ul li"));
             for (WebElement liElement : liElements) {
@@ -131,23 +174,59 @@ public class CoursePage {
      */
     public LinkedHashMap<String, String> getCourseInstructors() throws Exception {
         try {
-            List<WebElement> subClassDivElements = driver.findElements(By.cssSelector(".instructor-card"));
-            LinkedHashMap<String, String> courseIntructor = new LinkedHashMap<>();
+            // Courses without instructors are common; don't let the implicit wait stall the empty lookups
+            return ValidateUIHelpers.withoutImplicitWait(driver, () -> {
+                List<WebElement> subClassDivElements = driver.findElements(By.cssSelector(".instructor-card"));
+                LinkedHashMap<String, String> courseIntructor = new LinkedHashMap<>();
+
+                for (WebElement subClassDivElement : subClassDivElements) {
+                    List<WebElement> h3Elements = subClassDivElement.findElements(By.cssSelector("h3"));
+                    List<WebElement> spanElements = subClassDivElement.findElements(By.cssSelector("span"));
+                    if (!h3Elements.isEmpty() && spanElements.size() > 1) {
+                        courseIntructor.put(h3Elements.get(0).getText(), spanElements.get(1).getText());
+                    }
+                }
+
+                return courseIntructor;
+            });
+        } catch (Exception e) {
+            throw new Exception("Get the Course Instructor Failed. Exception: " + e);
+        }
+    }
+
+    /**
+     * Retrieves all course metadata at once.
+     * <p>
+     * Waits once for the course name to be present, then expands the learner section and reads name,
+     * description, duration, learning outcomes and instructors with a single in-page script, instead of
+     * one wait and several WebDriver commands per field.
+     *
+     * @return an immutable {@link CourseSnapshot} of the course page.
+     * @throws Exception if the page is not ready in time or the script fails.
+     */
+    public CourseSnapshot getCourseSnapshot() throws Exception {
+        try {
+            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(10));
+            wait.until(ExpectedConditions.presenceOfElementLocated(txt_CourseName));
 
-            for (WebElement subClassDivElement : subClassDivElements) {
-                WebElement h3Element = subClassDivElement.findElement(By.cssSelector("h3"));
-                String h3Text = h3Element.getText();
+            Map<?, ?> result = (Map<?, ?>) ((JavascriptExecutor) driver).executeAsyncScript(SNAPSHOT_SCRIPT,
+                    XPATH_COURSE_NAME, XPATH_COURSE_DESCRIPTION, XPATH_COURSE_DURATION, XPATH_COURSE_LEARNER_EXPAND, 5000);
 
-                List<WebElement> spanElements = subClassDivElement.findElements(By.cssSelector("span"));
-                if (spanElements.size() > 1) {
-                    String secondSpanText = spanElements.get(1).getText();
-                    courseIntructor.put(h3Text, secondSpanText);
-                }
+            List<String> outcomes = new ArrayList<>();
+            for (Object outcome : (List<?>) result.get("outcomes")) {
+                outcomes.add((String) outcome);
             }
 
-            return courseIntructor;
+            LinkedHashMap<String, String> instructors = new LinkedHashMap<>();
+            for (Object instructorObject : (List<?>) result.get("instructors")) {
+                Map<?, ?> instructor = (Map<?, ?>) instructorObject;
+                instructors.put((String) instructor.get("name"), (String) instructor.get("title"));
+            }
+
+            return new CourseSnapshot((String) result.get("name"), (String) result.get("description"),
+                    (String) result.get("duration"), outcomes, instructors);
         } catch (Exception e) {
-            throw new Exception("Get the Course Instructor Failed. Exception: " + e);
+            throw new Exception("Get the Course Snapshot Failed. Exception: " + e);
         }
     }
 
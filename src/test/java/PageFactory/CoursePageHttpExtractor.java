@@ -0,0 +1,214 @@
+package PageFactory;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import properties.PropertiesFile;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Browserless extraction of the public course page metadata.
+ * <p>
+ * Fetches the server-rendered course page with {@link HttpClient} and parses it with the same
+ * XPath expressions and CSS selectors as {@link CoursePage}. When the page does not contain every
+ * required field, including the learning outcomes list and complete instructor cards (e.g. because
+ * they are rendered client-side), no snapshot is returned and the caller falls back to the browser.
+ */
+public class CoursePageHttpExtractor {
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final Duration requestTimeout;
+    private final String userAgent;
+
+    /**
+     * Creates an extractor configured from configs.properties
+     * ({@code http.timeout} in seconds and {@code http.userAgent}).
+     */
+    public CoursePageHttpExtractor() {
+        this(Duration.ofSeconds(Long.parseLong(PropertiesFile.getPropValue("http.timeout", "15"))),
+                PropertiesFile.getPropValue("http.userAgent", "Mozilla/5.0 (X11; Linux x86_64) SeleniumJava"));
+    }
+
+    /**
+     * Creates an extractor.
+     *
+     * @param requestTimeout the maximum time for one page request.
+     * @param userAgent      the User-Agent header sent with each request.
+     */
+    public CoursePageHttpExtractor(Duration requestTimeout, String userAgent) {
+        this.requestTimeout = requestTimeout;
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Fetches and parses a course page without a browser.
+     *
+     * @param link the course URL.
+     * @return the snapshot, or empty if the request failed or the page lacks required fields.
+     */
+    public Optional<CourseSnapshot> fetchSnapshot(String link) {
+        return fetch(link, null, null).getSnapshot();
+    }
+
+    /**
+     * Fetches a course page conditionally. When validators from an earlier response are given, they are
+     * sent as {@code If-None-Match} / {@code If-Modified-Since}; a {@code 304 Not Modified} answer then
+     * costs no body transfer and no parsing.
+     *
+     * @param link         the course URL.
+     * @param etag         the ETag of the earlier response, or null.
+     * @param lastModified the Last-Modified header of the earlier response, or null.
+     * @return the outcome; never null.
+     */
+    public PageResponse fetch(String link, String etag, String lastModified) {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(link))
+                    .timeout(requestTimeout)
+                    .header("User-Agent", userAgent)
+                    .header("Accept", "text/html")
+                    .GET();
+            if (etag != null && !etag.isEmpty()) {
+                builder.header("If-None-Match", etag);
+            }
+            if (lastModified != null && !lastModified.isEmpty()) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+            HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            String newEtag = response.headers().firstValue("ETag").orElse(null);
+            String newLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            if (response.statusCode() == 304) {
+                return new PageResponse(true, Optional.<CourseSnapshot>empty(),
+                        newEtag != null ? newEtag : etag, newLastModified != null ? newLastModified : lastModified);
+            }
+            if (response.statusCode() != 200) {
+                System.out.println("HTTP " + response.statusCode() + " for " + link + ", falling back to browser");
+                return PageResponse.FAILED;
+            }
+            return new PageResponse(false, parse(response.body(), link), newEtag, newLastModified);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PageResponse.FAILED;
+        } catch (Exception e) {
+            System.out.println("HTTP extraction failed for " + link + ": " + e.getMessage());
+            return PageResponse.FAILED;
+        }
+    }
+
+    /**
+     * Parses course page HTML.
+     *
+     * @param html    the page source.
+     * @param baseUri the page URL, used to resolve relative links.
+     * @return the snapshot, or empty if name, description, duration or the learning outcomes are missing,
+     *         or an instructor card is not rendered completely.
+     */
+    public static Optional<CourseSnapshot> parse(String html, String baseUri) {
+        Document document = Jsoup.parse(html, baseUri);
+
+        String name = firstText(document, CoursePage.XPATH_COURSE_NAME);
+        String description = firstText(document, CoursePage.XPATH_COURSE_DESCRIPTION);
+        String duration = firstText(document, CoursePage.XPATH_COURSE_DURATION);
+        if (isBlank(name) || isBlank(description) || isBlank(duration)) {
+            return Optional.empty();
+        }
+
+        // Sections rendered client-side are empty in the server HTML; let the browser read them instead
+        List<String> outcomes = new ArrayList<>();
+        for (Element item : document.select(".mt-2.html-data ul li")) {
+            outcomes.add(item.text());
+        }
+        if (outcomes.isEmpty()) {
+            return Optional.empty();
+        }
+
+        LinkedHashMap<String, String> instructors = new LinkedHashMap<>();
+        for (Element card : document.select(".instructor-card")) {
+            Element h3 = card.selectFirst("h3");
+            Elements spans = card.select("span");
+            if (h3 == null || spans.size() < 2 || isBlank(h3.text())) {
+                return Optional.empty();
+            }
+            instructors.put(h3.text(), spans.get(1).text());
+        }
+
+        return Optional.of(new CourseSnapshot(name, description, duration, outcomes, instructors));
+    }
+
+    /**
+     * Result of a (conditional) page request.
+     */
+    public static final class PageResponse {
+        static final PageResponse FAILED = new PageResponse(false, Optional.<CourseSnapshot>empty(), null, null);
+
+        private final boolean notModified;
+        private final Optional<CourseSnapshot> snapshot;
+        private final String etag;
+        private final String lastModified;
+
+        PageResponse(boolean notModified, Optional<CourseSnapshot> snapshot, String etag, String lastModified) {
+            this.notModified = notModified;
+            this.snapshot = snapshot;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return true if the server answered 304, i.e. the page did not change since the given validators.
+         */
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * @return true if the request failed (no answer, or a status other than 200 and 304), so it says
+         *         nothing about whether the page changed.
+         */
+        public boolean isFailed() {
+            return this == FAILED;
+        }
+
+        /**
+         * @return the parsed page, or empty if not modified, failed or incomplete.
+         */
+        public Optional<CourseSnapshot> getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * @return the ETag to send next time, or null if the server sent none.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the Last-Modified value to send next time, or null if the server sent none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static String firstText(Document document, String xpath) {
+        Elements elements = document.selectXpath(xpath);
+        return elements.isEmpty() ? null : elements.first().text();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
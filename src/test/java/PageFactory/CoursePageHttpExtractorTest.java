@@ -0,0 +1,104 @@
+package PageFactory;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Parses course page fixtures and fetches them from a local HTTP server.
+ */
+public class CoursePageHttpExtractorTest {
+
+    private static final String BASE_URI = "https://example.org/learn/course";
+
+    @Test
+    public void parsesACompletePage() {
+        Optional<CourseSnapshot> snapshot = CoursePageHttpExtractor.parse(page(
+                "<ul><li>Outcome 1</li><li>Outcome 2</li></ul>",
+                "<div class='instructor-card'><h3>Jane Doe</h3><span>Harvard</span><span>Professor</span></div>"), BASE_URI);
+
+        Assert.assertTrue(snapshot.isPresent(), "Complete page was not parsed");
+        Assert.assertEquals(snapshot.get().getName(), "R Basics");
+        Assert.assertEquals(snapshot.get().getDescription(), "Learn R.");
+        Assert.assertEquals(snapshot.get().getDuration(), "8 weeks");
+        Assert.assertEquals(snapshot.get().getLearningOutcomes(), Arrays.asList("Outcome 1", "Outcome 2"));
+        Assert.assertEquals(snapshot.get().getInstructors().get("Jane Doe"), "Professor");
+    }
+
+    @Test
+    public void pageWithoutOutcomesNeedsTheBrowser() {
+        Assert.assertFalse(CoursePageHttpExtractor.parse(page("<ul></ul>", ""), BASE_URI).isPresent());
+    }
+
+    @Test
+    public void incompleteInstructorCardNeedsTheBrowser() {
+        Assert.assertFalse(CoursePageHttpExtractor.parse(page("<ul><li>Outcome 1</li></ul>",
+                "<div class='instructor-card'><h3>Jane Doe</h3></div>"), BASE_URI).isPresent());
+    }
+
+    @Test
+    public void pageWithoutNameNeedsTheBrowser() {
+        Assert.assertFalse(CoursePageHttpExtractor.parse("<html><body><p class='p'>Learn R.</p></body></html>",
+                BASE_URI).isPresent());
+    }
+
+    @Test
+    public void conditionalFetchReturnsNotModified() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/broken")) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = page("<ul><li>Outcome 1</li></ul>", "").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            CoursePageHttpExtractor extractor = new CoursePageHttpExtractor(Duration.ofSeconds(5), "CoursePageHttpExtractorTest");
+            String link = "http://localhost:" + server.getAddress().getPort() + "/course";
+
+            CoursePageHttpExtractor.PageResponse first = extractor.fetch(link, null, null);
+            Assert.assertFalse(first.isNotModified());
+            Assert.assertTrue(first.getSnapshot().isPresent(), "Page was not parsed");
+            Assert.assertEquals(first.getEtag(), "\"v1\"");
+
+            CoursePageHttpExtractor.PageResponse second = extractor.fetch(link, first.getEtag(), null);
+            Assert.assertTrue(second.isNotModified(), "Matching ETag did not give 304");
+            Assert.assertFalse(second.isFailed());
+            Assert.assertFalse(second.getSnapshot().isPresent());
+            Assert.assertEquals(second.getEtag(), "\"v1\"");
+
+            CoursePageHttpExtractor.PageResponse failed = extractor.fetch(
+                    "http://localhost:" + server.getAddress().getPort() + "/broken", "\"v1\"", null);
+            Assert.assertTrue(failed.isFailed(), "HTTP 500 was not reported as failed");
+            Assert.assertFalse(failed.isNotModified());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static String page(String outcomes, String instructors) {
+        return "<html><body><div id='main-content'><div><div><div><div></div><div></div><div></div><div></div>"
+                + "<div><div><h1>R Basics</h1></div></div></div></div></div></div>"
+                + "<p class='p'>Learn R.</p><div class='h4 mb-0'>8 weeks</div>"
+                + "<div class='mt-2 html-data'>" + outcomes + "</div>" + instructors + "</body></html>";
+    }
+}
@@ -14,7 +14,7 @@ import java.time.Duration;
  * Allows user to interact with the available course plans, such as selecting the free audit option.
  */
 public class CoursePlanPage {
-    static WebDriver driver;
+    private final WebDriver driver;
 
     // Locator for the "Use Free Plan" button (Audit track)
     public static By btn_useFreePlan = By.xpath("//*[@id=\"track_selection_audit\"]/span");
@@ -25,7 +25,7 @@ public class CoursePlanPage {
      * @param driver WebDriver instance used to interact with the Course Plan page.
      */
     public CoursePlanPage(WebDriver driver){
-        CoursePlanPage.driver = driver;
+        this.driver = driver;
     }
 
     /**
@@ -0,0 +1,140 @@
+package PageFactory;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable result of scraping one course: the link, the course page metadata and the course outline.
+ */
+public final class CourseRecord {
+
+    private final String link;
+    private final CourseSnapshot snapshot;
+    private final Map<String, Map<String, String>> outline;
+
+    /**
+     * Creates a record. The outline is copied, so later changes to the argument are not visible.
+     *
+     * @param link     the course URL.
+     * @param snapshot the course page metadata.
+     * @param outline  section title → (lesson title → URL), in page order; may be empty.
+     */
+    public CourseRecord(String link, CourseSnapshot snapshot, Map<String, ? extends Map<String, String>> outline) {
+        this.link = link;
+        this.snapshot = snapshot;
+        LinkedHashMap<String, Map<String, String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Map<String, String>> section : outline.entrySet()) {
+            copy.put(section.getKey(), Collections.unmodifiableMap(new LinkedHashMap<>(section.getValue())));
+        }
+        this.outline = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Creates a record from the untyped outline returned by {@link CourseDetailPage}.
+     *
+     * @param link     the course URL.
+     * @param snapshot the course page metadata.
+     * @param outline  the outline as returned by {@link CourseDetailPage#extractCourseOutline()}.
+     * @return the record.
+     */
+    @SuppressWarnings("unchecked")
+    public static CourseRecord fromOutline(String link, CourseSnapshot snapshot, Map<String, Object> outline) {
+        LinkedHashMap<String, Map<String, String>> typed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> section : outline.entrySet()) {
+            typed.put(section.getKey(), (Map<String, String>) section.getValue());
+        }
+        return new CourseRecord(link, snapshot, typed);
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    public CourseSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Map<String, Map<String, String>> getOutline() {
+        return outline;
+    }
+
+    /**
+     * Returns the record in the map layout expected by {@code DocGenerate.createDocument}.
+     *
+     * @return a LinkedHashMap with the keys Title, Description, Instructor, What'll you learn,
+     *         CourseDetail, CourseDuration and CourseLink.
+     */
+    public LinkedHashMap<String, Object> toDocumentData() {
+        LinkedHashMap<String, Object> courseDetail = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> section : outline.entrySet()) {
+            courseDetail.put(section.getKey(), new LinkedHashMap<>(section.getValue()));
+        }
+
+        LinkedHashMap<String, Object> data = new LinkedHashMap<>();
+        data.put("Title", snapshot.getName());
+        data.put("Description", snapshot.getDescription());
+        data.put("Instructor", snapshot.getInstructorSection());
+        data.put("What'll you learn", snapshot.getLearnerSection());
+        data.put("CourseDetail", courseDetail);
+        data.put("CourseDuration", snapshot.getDuration());
+        data.put("CourseLink", link);
+        return data;
+    }
+
+    /**
+     * Hashes everything that ends up in a document or export: name, description, duration, learning
+     * outcomes, instructors and the outline, in order. Two records with the same fingerprint render
+     * the same output, so an unchanged fingerprint means there is nothing to regenerate.
+     *
+     * @return the SHA-256 of the record's content as lowercase hex.
+     */
+    public String fingerprint() {
+        MessageDigest sha = DigestUtils.getSha256Digest();
+        update(sha, link);
+        update(sha, snapshot.getName());
+        update(sha, snapshot.getDescription());
+        update(sha, snapshot.getDuration());
+        update(sha, String.valueOf(snapshot.getLearningOutcomes().size()));
+        for (String outcome : snapshot.getLearningOutcomes()) {
+            update(sha, outcome);
+        }
+        update(sha, String.valueOf(snapshot.getInstructors().size()));
+        for (Map.Entry<String, String> instructor : snapshot.getInstructors().entrySet()) {
+            update(sha, instructor.getKey());
+            update(sha, instructor.getValue());
+        }
+        update(sha, String.valueOf(outline.size()));
+        for (Map.Entry<String, Map<String, String>> section : outline.entrySet()) {
+            update(sha, section.getKey());
+            update(sha, String.valueOf(section.getValue().size()));
+            for (Map.Entry<String, String> lesson : section.getValue().entrySet()) {
+                update(sha, lesson.getKey());
+                update(sha, lesson.getValue());
+            }
+        }
+        return Hex.encodeHexString(sha.digest());
+    }
+
+    /**
+     * Adds one field with a terminator, so that e.g. ("ab", "c") and ("a", "bc") hash differently.
+     */
+    private static void update(MessageDigest sha, String value) {
+        if (value == null) {
+            sha.update((byte) 1);
+        } else {
+            sha.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        sha.update((byte) 0);
+    }
+
+    @Override
+    public String toString() {
+        return "CourseRecord{link='" + link + "', " + snapshot + ", sections=" + outline.size() + "}";
+    }
+}
@@ -0,0 +1,111 @@
+package PageFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the metadata shown on a course page.
+ * <p>
+ * Created by {@link CoursePage#getCourseSnapshot()} from a single in-page script, so all fields
+ * describe the same rendering of the page.
+ */
+public final class CourseSnapshot {
+
+    private final String name;
+    private final String description;
+    private final String duration;
+    private final List<String> learningOutcomes;
+    private final Map<String, String> instructors;
+
+    /**
+     * Creates a snapshot. The collections are copied, so later changes to the arguments are not visible.
+     * All texts are normalized with {@link #normalize(String)}, so the browser and the HTTP extraction
+     * produce equal snapshots (and fingerprints) for the same page.
+     *
+     * @param name             the course name.
+     * @param description      the course description.
+     * @param duration         the course duration (e.g., "3 weeks").
+     * @param learningOutcomes the "What'll you learn" items in page order.
+     * @param instructors      instructor name → subtitle/role, in page order.
+     */
+    public CourseSnapshot(String name, String description, String duration,
+                          List<String> learningOutcomes, Map<String, String> instructors) {
+        this.name = normalize(name);
+        this.description = normalize(description);
+        this.duration = normalize(duration);
+        List<String> outcomes = new ArrayList<>(learningOutcomes.size());
+        for (String outcome : learningOutcomes) {
+            outcomes.add(normalize(outcome));
+        }
+        this.learningOutcomes = Collections.unmodifiableList(outcomes);
+        LinkedHashMap<String, String> people = new LinkedHashMap<>();
+        for (Map.Entry<String, String> instructor : instructors.entrySet()) {
+            people.put(normalize(instructor.getKey()), normalize(instructor.getValue()));
+        }
+        this.instructors = Collections.unmodifiableMap(people);
+    }
+
+    /**
+     * Collapses whitespace the way jsoup's {@code text()} does: runs of whitespace, including line breaks
+     * and non-breaking spaces, become one space, and the ends are trimmed. Selenium's {@code getText()}
+     * keeps line breaks, so both extraction paths go through this.
+     *
+     * @param text the extracted text; may be null.
+     * @return the normalized text, or null if {@code text} is null.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        return text.replace('\u00A0', ' ').replaceAll("\\s+", " ").trim();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public List<String> getLearningOutcomes() {
+        return learningOutcomes;
+    }
+
+    public Map<String, String> getInstructors() {
+        return instructors;
+    }
+
+    /**
+     * Returns the learning outcomes in the shape produced by {@link CoursePage#getCourseLearner()}.
+     *
+     * @return LinkedHashMap with a single entry: key "What'll you learn", and value a list of learning items.
+     */
+    public LinkedHashMap<String, Object> getLearnerSection() {
+        LinkedHashMap<String, Object> courseLearner = new LinkedHashMap<>();
+        courseLearner.put("What'll you learn", new ArrayList<>(learningOutcomes));
+        return courseLearner;
+    }
+
+    /**
+     * Returns the instructors in the shape produced by {@link CoursePage#getCourseInstructors()}.
+     *
+     * @return LinkedHashMap where key is instructor name and value is subtitle/role.
+     */
+    public LinkedHashMap<String, String> getInstructorSection() {
+        return new LinkedHashMap<>(instructors);
+    }
+
+    @Override
+    public String toString() {
+        return "CourseSnapshot{name='" + name + "', duration='" + duration + "', learningOutcomes="
+                + learningOutcomes.size() + ", instructors=" + instructors.size() + "}";
+    }
+}
@@ -5,6 +5,7 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import ui.driver.ValidateUIHelpers;
 
 import java.time.Duration;
 
@@ -15,7 +16,7 @@ import java.time.Duration;
  * clicking banners, switching tabs, and submitting login credentials.
  */
 public class LoginPage {
-    static WebDriver driver;
+    private final WebDriver driver;
 
     // Locators for login page elements
     public static By btn_SignInBanner = By.xpath("//*[@class=\"btn btn-tertiary user-link sign-in-link\"]");
@@ -30,7 +31,7 @@ public class LoginPage {
      * @param driver WebDriver instance used to control the browser.
      */
     public LoginPage(WebDriver driver){
-        LoginPage.driver = driver;
+        this.driver = driver;
     }
 
     /**
@@ -63,6 +64,41 @@ public class LoginPage {
         }
     }
 
+    /**
+     * Waits until either the login form or the given "already logged in" element shows up.
+     *
+     * @param loggedInElement an element that is only shown when the user is already logged in.
+     * @return true if the login form is shown; false if the user is already logged in.
+     * @throws Exception if neither element appears in time.
+     */
+    public boolean isLoginRequired(By loggedInElement) throws Exception {
+        try {
+            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(15));
+            wait.until(ExpectedConditions.or(
+                    ExpectedConditions.presenceOfElementLocated(btn_SignIn),
+                    ExpectedConditions.presenceOfElementLocated(btn_SignIn_LogIn),
+                    ExpectedConditions.presenceOfElementLocated(loggedInElement)));
+            ValidateUIHelpers validateUIHelpers = new ValidateUIHelpers(driver);
+            return !validateUIHelpers.isElementPresent(loggedInElement);
+        } catch (Exception e) {
+            throw new Exception("Could not detect the login state. Exception: " + e);
+        }
+    }
+
+    /**
+     * Waits until the login form is gone after submitting the credentials.
+     *
+     * @throws Exception if the login form is still shown after the timeout.
+     */
+    public void waitForLoginCompleted() throws Exception {
+        try {
+            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(30));
+            wait.until(ExpectedConditions.invisibilityOfElementLocated(txb_Password));
+        } catch (Exception e) {
+            throw new Exception("Login did not complete. Exception: " + e);
+        }
+    }
+
     /**
      * Logs in to the application using the provided credentials.
      *
@@ -4,13 +4,32 @@ import Tz.BaseSetup;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
+import org.testng.Reporter;
 import ui.driver.CaptureHelpers;
+import ui.driver.FlightRecorder;
+import properties.PropertiesFile;
+import ui.driver.RequestBlocker;
+import ui.driver.ScreencastRecorder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 public class TestListener implements ITestListener {
+
+    private static final String TRAFFIC_BASELINE = "trafficBaseline";
+    private static final String FLIGHT_RECORDING = "flightRecording";
+    private static final String SCREENCAST = "screencast";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH-mm-ss-SSS");
+
     @Override
     public void onFinish(ITestContext arg0) {
-        // TODO Auto-generated method stub
-
+        System.out.print(BaseSetup.getStartupReport());
+        if (!CaptureHelpers.flushScreenshots(30)) {
+            System.out.println("Some screenshots were still being written when the test context finished");
+        }
     }
 
     @Override
@@ -27,29 +46,120 @@ public class TestListener implements ITestListener {
 
     @Override
     public void onTestFailure(ITestResult arg0) {
+        reportTraffic(arg0);
         try {
             System.out.println("Failed TCs: " + arg0.getName());
-            CaptureHelpers.captureScreenshot(new BaseSetup().getDriver(), arg0.getName());
+            CaptureHelpers.captureScreenshot(BaseSetup.getDriver(), arg0.getName());
         } catch (Exception e) {
             System.out.println("Exception while taking screenshot " + e.getMessage());
         }
+        if (arg0.getAttribute(FLIGHT_RECORDING) != null) {
+            FlightRecorder.getInstance().dump(arg0.getName());
+        }
+        endFlightRecording(arg0);
+        endScreencast(arg0, true);
     }
 
     @Override
     public void onTestSkipped(ITestResult arg0) {
-        // TODO Auto-generated method stub
-
+        endFlightRecording(arg0);
+        endScreencast(arg0, false);
     }
 
     @Override
     public void onTestStart(ITestResult arg0) {
-        // TODO Auto-generated method stub
-
+        RequestBlocker.forDriver(BaseSetup.getDriver())
+                .ifPresent(blocker -> arg0.setAttribute(TRAFFIC_BASELINE, blocker.getStats()));
+        if (FlightRecorder.getInstance().isEnabled()) {
+            FlightRecorder.getInstance().begin();
+            arg0.setAttribute(FLIGHT_RECORDING, Boolean.TRUE);
+        }
+        startScreencast(arg0);
     }
 
     @Override
     public void onTestSuccess(ITestResult arg0) {
         System.out.println("Passed TCs: " + arg0.getName());
+        reportTraffic(arg0);
+        endFlightRecording(arg0);
+        endScreencast(arg0, false);
+    }
+
+    /**
+     * Starts a screencast of the test's own browser when {@code screencast.enabled=true}.
+     *
+     * @param result the starting test.
+     */
+    private void startScreencast(ITestResult result) {
+        if (!Boolean.parseBoolean(PropertiesFile.getPropValue("screencast.enabled", "false"))) {
+            return;
+        }
+        ScreencastRecorder.forDriver(BaseSetup.getDriver()).ifPresent(recorder -> {
+            Path target = Paths.get(System.getProperty("user.dir"),
+                    PropertiesFile.getPropValue("exportVideoPath", "ExportData/Videos"),
+                    result.getName() + "-" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + "." + recorder.getFormat());
+            try {
+                recorder.start(target);
+                result.setAttribute(SCREENCAST, recorder);
+            } catch (Exception e) {
+                System.out.println("Could not start screencast for " + result.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops the test's screencast. Recordings of passing tests are deleted unless
+     * {@code screencast.keepPassed=true}.
+     *
+     * @param result the finished test.
+     * @param failed whether the test failed.
+     */
+    private void endScreencast(ITestResult result, boolean failed) {
+        Object recorder = result.getAttribute(SCREENCAST);
+        if (!(recorder instanceof ScreencastRecorder)) {
+            return;
+        }
+        result.removeAttribute(SCREENCAST);
+        Path video = ((ScreencastRecorder) recorder).stop();
+        if (video == null) {
+            return;
+        }
+        if (failed || Boolean.parseBoolean(PropertiesFile.getPropValue("screencast.keepPassed", "false"))) {
+            Reporter.log("Screencast for " + result.getName() + ": " + video, true);
+        } else {
+            try {
+                Files.deleteIfExists(video);
+            } catch (Exception e) {
+                System.out.println("Could not delete screencast " + video + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the flight recording started for the test, if any. Passing tests leave nothing on disk.
+     *
+     * @param result the finished test.
+     */
+    private void endFlightRecording(ITestResult result) {
+        if (result.getAttribute(FLIGHT_RECORDING) != null) {
+            result.removeAttribute(FLIGHT_RECORDING);
+            FlightRecorder.getInstance().end();
+        }
+    }
 
+    /**
+     * Logs the requests blocked and the bytes transferred by the test's browser while the test ran.
+     *
+     * @param result the finished test.
+     */
+    private void reportTraffic(ITestResult result) {
+        RequestBlocker.forDriver(BaseSetup.getDriver()).ifPresent(blocker -> {
+            RequestBlocker.TrafficStats stats = blocker.getStats();
+            Object baseline = result.getAttribute(TRAFFIC_BASELINE);
+            if (baseline instanceof RequestBlocker.TrafficStats) {
+                stats = stats.minus((RequestBlocker.TrafficStats) baseline);
+            }
+            Reporter.log("Network traffic for " + result.getName() + ": " + stats, true);
+        });
     }
 }
@@ -0,0 +1,499 @@
+package Repository;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import properties.ConfigService;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists scraped courses to MySQL without slowing down the scraping threads.
+ * <p>
+ * {@link #save(CourseRecord)} only puts the course on a bounded queue. Writer threads take up to
+ * {@code batchSize} queued courses at a time and upsert them in one transaction: one JDBC batch per
+ * table, so a batch costs a handful of round trips no matter how many courses, instructors, learning
+ * outcomes and lessons it holds. For MySQL URLs the connection is opened with
+ * {@code rewriteBatchedStatements=true}, which turns each batch into multi-row statements. Each writer
+ * borrows its connection from a small fixed pool and returns it after the commit.
+ * <p>
+ * Tables (created if missing):
+ * <ul>
+ *     <li>{@code course}: link_hash (key), link, name, description, duration, scraped_at</li>
+ *     <li>{@code course_instructor}: link_hash, position, name, role</li>
+ *     <li>{@code course_outcome}: link_hash, position, outcome</li>
+ *     <li>{@code course_lesson}: link_hash, position, section, title, url</li>
+ * </ul>
+ * Courses are keyed by the SHA-256 of their link ({@code BINARY(32)}), which keeps every key far below
+ * InnoDB's 3072-byte limit however long the URL is. Child rows are keyed by (link_hash, position); rows
+ * beyond the new count are deleted, so re-saving a course replaces its lists. The SQL only uses
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE}, which embedded stand-ins such as H2 in MySQL mode
+ * ({@code jdbc:h2:mem:courses;MODE=MySQL}) also accept.
+ * <p>
+ * A batch that fails is rolled back and its courses are retried one by one, so one bad course does not
+ * cost the others. Links that still fail are reported by {@link #getFailedLinks()} until they are saved.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     try (CourseRepository repository = CourseRepository.open("jdbc:mysql://localhost:3306/courses",
+ *             "user", "secret", 2, 500)) {
+ *         repository.save(record);
+ *     }
+ * </pre>
+ */
+public class CourseRepository implements Closeable {
+
+    private static final String UPSERT_COURSE = "INSERT INTO course (link_hash, link, name, description, duration, "
+            + "scraped_at) VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name), "
+            + "description = VALUES(description), duration = VALUES(duration), scraped_at = VALUES(scraped_at)";
+    private static final String UPSERT_INSTRUCTOR = "INSERT INTO course_instructor (link_hash, position, name, role) "
+            + "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name), role = VALUES(role)";
+    private static final String UPSERT_OUTCOME = "INSERT INTO course_outcome (link_hash, position, outcome) "
+            + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE outcome = VALUES(outcome)";
+    private static final String UPSERT_LESSON = "INSERT INTO course_lesson (link_hash, position, section, title, url) "
+            + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE section = VALUES(section), title = VALUES(title), url = VALUES(url)";
+    private static final String[] CHILD_TABLES = {"course_instructor", "course_outcome", "course_lesson"};
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS course (link_hash BINARY(32) NOT NULL PRIMARY KEY, link VARCHAR(2048) NOT NULL, "
+                    + "name VARCHAR(512), description TEXT, duration VARCHAR(128), scraped_at TIMESTAMP NULL)",
+            "CREATE TABLE IF NOT EXISTS course_instructor (link_hash BINARY(32) NOT NULL, position INT NOT NULL, "
+                    + "name VARCHAR(512), role VARCHAR(1024), PRIMARY KEY (link_hash, position))",
+            "CREATE TABLE IF NOT EXISTS course_outcome (link_hash BINARY(32) NOT NULL, position INT NOT NULL, "
+                    + "outcome TEXT, PRIMARY KEY (link_hash, position))",
+            "CREATE TABLE IF NOT EXISTS course_lesson (link_hash BINARY(32) NOT NULL, position INT NOT NULL, "
+                    + "section VARCHAR(512), title VARCHAR(1024), url VARCHAR(2048), PRIMARY KEY (link_hash, position))"
+    };
+
+    /** Marks the end of the queue for one writer thread. */
+    private static final CourseRecord STOP = new CourseRecord("", null, new LinkedHashMap<String, Map<String, String>>());
+
+    private final String url;
+    private final BlockingQueue<Connection> pool;
+    private final BlockingQueue<CourseRecord> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private final int batchSize;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final Set<String> failedLinks = ConcurrentHashMap.newKeySet();
+    private final Object idle = new Object();
+    private volatile boolean closed;
+
+    private CourseRepository(String url, List<Connection> connections, int queueSize, int batchSize) {
+        this.url = url;
+        this.pool = new ArrayBlockingQueue<>(connections.size(), false, connections);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        for (int i = 0; i < connections.size(); i++) {
+            Thread writer = new Thread(this::drain, "course-repository-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    /**
+     * Opens the pool, creates the tables if needed and starts the writer threads.
+     *
+     * @param url       the JDBC URL, e.g. "jdbc:mysql://localhost:3306/courses".
+     * @param user      the database user; may be null for embedded databases.
+     * @param password  the password; may be null.
+     * @param poolSize  the number of connections, which is also the number of writer threads.
+     * @param batchSize the maximum number of courses written in one transaction.
+     * @return the repository.
+     * @throws Exception if the database cannot be reached or the tables cannot be created.
+     */
+    public static CourseRepository open(String url, String user, String password, int poolSize, int batchSize)
+            throws Exception {
+        Properties info = new Properties();
+        if (user != null) {
+            info.setProperty("user", user);
+        }
+        if (password != null) {
+            info.setProperty("password", password);
+        }
+        if (url.startsWith("jdbc:mysql:")) {
+            // Sends each batch as multi-row INSERTs instead of one statement per row
+            info.setProperty("rewriteBatchedStatements", "true");
+            info.setProperty("cachePrepStmts", "true");
+        }
+
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.max(1, poolSize); i++) {
+                Connection connection = DriverManager.getConnection(url, info);
+                connection.setAutoCommit(false);
+                connections.add(connection);
+            }
+            try (Statement statement = connections.get(0).createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            connections.get(0).commit();
+        } catch (SQLException e) {
+            closeAll(connections);
+            throw new Exception("Opening course repository " + url + " Failed. Exception: " + e);
+        }
+        int size = Math.max(1, batchSize);
+        return new CourseRepository(url, connections, size * 4, size);
+    }
+
+    /**
+     * Opens the repository configured in configs.properties ({@code db.enabled}, {@code db.url},
+     * {@code db.user}, {@code db.password}, {@code db.poolSize} and {@code db.batchSize}).
+     *
+     * @return the repository, or empty if persistence is disabled.
+     * @throws Exception if the database cannot be reached.
+     */
+    public static Optional<CourseRepository> fromConfig() throws Exception {
+        ConfigService config = ConfigService.getInstance();
+        if (!config.getBoolean("db.enabled", false)) {
+            return Optional.empty();
+        }
+        return Optional.of(open(config.get("db.url"),
+                config.get("db.user", null),
+                config.get("db.password", null),
+                config.getInt("db.poolSize", 2),
+                config.getInt("db.batchSize", 500)));
+    }
+
+    /**
+     * Describes the database, e.g. to tell whether a course index was built for it.
+     *
+     * @return the JDBC URL without its parameters.
+     */
+    public String getTarget() {
+        int parameters = url.indexOf('?');
+        return parameters < 0 ? url : url.substring(0, parameters);
+    }
+
+    /**
+     * Checks whether the course table is empty, e.g. because the database was just created.
+     *
+     * @return true if no course is stored.
+     * @throws Exception if the table cannot be read.
+     */
+    public boolean isEmpty() throws Exception {
+        Connection connection = pool.take();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT 1 FROM course LIMIT 1")) {
+            boolean empty = !result.next();
+            connection.commit();
+            return empty;
+        } catch (SQLException e) {
+            throw new Exception("Reading course table Failed. Exception: " + e);
+        } finally {
+            pool.put(connection);
+        }
+    }
+
+    /**
+     * Queues a course to be upserted. Returns at once unless the queue is full, in which case the caller
+     * waits for the writers to catch up.
+     *
+     * @param record the scraped course.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public void save(CourseRecord record) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Course repository is closed");
+        }
+        pending.incrementAndGet();
+        queue.put(record);
+    }
+
+    /**
+     * Waits until every queued course is committed or has failed.
+     *
+     * @param timeoutMillis the maximum time to wait.
+     * @return true if the queue was drained in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                idle.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<CourseRecord> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                CourseRecord first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                batch.add(first);
+                // Take whatever else is already waiting, up to one batch
+                queue.drainTo(batch, batchSize - 1);
+                int stops = 0;
+                while (batch.remove(STOP)) {
+                    stops++;
+                }
+                // Every writer needs its own stop marker; hand back the ones meant for the others
+                for (int i = 1; i < stops; i++) {
+                    queue.put(STOP);
+                }
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+                batch.clear();
+                if (stops > 0) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closing
+        }
+    }
+
+    private void writeBatch(List<CourseRecord> batch) throws InterruptedException {
+        Connection connection = pool.take();
+        try {
+            Exception error = write(connection, batch);
+            if (error != null && batch.size() == 1) {
+                fail(batch.get(0), error);
+            } else if (error != null) {
+                System.out.println("Saving " + batch.size() + " courses Failed, retrying one by one. Exception: " + error);
+                for (CourseRecord record : batch) {
+                    Exception recordError = write(connection, Collections.singletonList(record));
+                    if (recordError != null) {
+                        fail(record, recordError);
+                    }
+                }
+            }
+        } finally {
+            pool.put(connection);
+            if (pending.addAndGet(-batch.size()) == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Upserts and commits the courses in one transaction, rolling back on any error so the writer survives it.
+     *
+     * @return null if the courses were committed; otherwise the error.
+     */
+    private Exception write(Connection connection, List<CourseRecord> records) {
+        try {
+            upsert(connection, records);
+            connection.commit();
+            saved.addAndGet(records.size());
+            batches.incrementAndGet();
+            for (CourseRecord record : records) {
+                failedLinks.remove(record.getLink());
+            }
+            return null;
+        } catch (Exception e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                System.out.println("Rollback failed: " + rollbackError.getMessage());
+            }
+            return e;
+        }
+    }
+
+    private void fail(CourseRecord record, Exception error) {
+        failed.incrementAndGet();
+        failedLinks.add(record.getLink());
+        System.out.println("Saving course " + record.getLink() + " Failed. Exception: " + error);
+    }
+
+    private static void upsert(Connection connection, List<CourseRecord> batch) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int[][] counts = new int[batch.size()][];
+        try (PreparedStatement course = connection.prepareStatement(UPSERT_COURSE);
+             PreparedStatement instructor = connection.prepareStatement(UPSERT_INSTRUCTOR);
+             PreparedStatement outcome = connection.prepareStatement(UPSERT_OUTCOME);
+             PreparedStatement lesson = connection.prepareStatement(UPSERT_LESSON)) {
+            for (int i = 0; i < batch.size(); i++) {
+                CourseRecord record = batch.get(i);
+                CourseSnapshot snapshot = record.getSnapshot();
+                byte[] key = linkHash(record.getLink());
+                course.setBytes(1, key);
+                course.setString(2, record.getLink());
+                course.setString(3, snapshot.getName());
+                course.setString(4, snapshot.getDescription());
+                course.setString(5, snapshot.getDuration());
+                course.setTimestamp(6, now);
+                course.addBatch();
+
+                int position = 0;
+                for (Map.Entry<String, String> entry : snapshot.getInstructors().entrySet()) {
+                    instructor.setBytes(1, key);
+                    instructor.setInt(2, position++);
+                    instructor.setString(3, entry.getKey());
+                    instructor.setString(4, entry.getValue());
+                    instructor.addBatch();
+                }
+                int instructors = position;
+
+                position = 0;
+                for (String item : snapshot.getLearningOutcomes()) {
+                    outcome.setBytes(1, key);
+                    outcome.setInt(2, position++);
+                    outcome.setString(3, item);
+                    outcome.addBatch();
+                }
+                int outcomes = position;
+
+                position = 0;
+                for (Map.Entry<String, Map<String, String>> section : record.getOutline().entrySet()) {
+                    for (Map.Entry<String, String> entry : section.getValue().entrySet()) {
+                        lesson.setBytes(1, key);
+                        lesson.setInt(2, position++);
+                        lesson.setString(3, section.getKey());
+                        lesson.setString(4, entry.getKey());
+                        lesson.setString(5, entry.getValue());
+                        lesson.addBatch();
+                    }
+                }
+                counts[i] = new int[]{instructors, outcomes, position};
+            }
+            course.executeBatch();
+            instructor.executeBatch();
+            outcome.executeBatch();
+            lesson.executeBatch();
+        }
+
+        // Drop list entries left over from a longer earlier version of the course
+        for (int table = 0; table < CHILD_TABLES.length; table++) {
+            try (PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM " + CHILD_TABLES[table] + " WHERE link_hash = ? AND position >= ?")) {
+                for (int i = 0; i < batch.size(); i++) {
+                    delete.setBytes(1, linkHash(batch.get(i).getLink()));
+                    delete.setInt(2, counts[i][table]);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Computes the key of a course: the SHA-256 of its link.
+     *
+     * @param link the course URL.
+     * @return the 32-byte hash.
+     */
+    public static byte[] linkHash(String link) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(link.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Gets the number of courses committed so far.
+     *
+     * @return the saved course count.
+     */
+    public long getSavedCount() {
+        return saved.get();
+    }
+
+    /**
+     * Gets the number of courses that could not be saved, even on their own.
+     *
+     * @return the failed course count.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the links whose last save failed. Call after {@link #flush(long)} to learn which queued courses
+     * did not reach the database; a link is removed again once a later save of it succeeds.
+     *
+     * @return a snapshot of the failed links.
+     */
+    public Set<String> getFailedLinks() {
+        return new HashSet<>(failedLinks);
+    }
+
+    /**
+     * Gets the number of committed transactions.
+     *
+     * @return the batch count.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Writes everything still queued, stops the writers and closes the connections.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int i = 0; i < writers.size(); i++) {
+                queue.put(STOP);
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Thread writer : writers) {
+                writer.interrupt();
+            }
+        }
+        List<Connection> connections = new ArrayList<>();
+        pool.drainTo(connections);
+        closeAll(connections);
+        System.out.println("Course repository: " + saved.get() + " saved, " + failed.get() + " failed in "
+                + batches.get() + " batches");
+    }
+
+    private static void closeAll(List<Connection> connections) {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println("Error while closing connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package Repository;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs CourseRepository against an in-memory H2 database in MySQL mode.
+ */
+public class CourseRepositoryTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Test
+    public void savesQueuedCoursesInBatches() throws Exception {
+        String url = newDatabase();
+        try (CourseRepository repository = CourseRepository.open(url, null, null, 1, 5);
+             Connection check = DriverManager.getConnection(url)) {
+            for (int i = 0; i < 25; i++) {
+                repository.save(course("https://example.org/course/" + i, 3));
+            }
+            Assert.assertTrue(repository.flush(30000), "Queue was not drained");
+
+            Assert.assertEquals(repository.getSavedCount(), 25);
+            Assert.assertEquals(repository.getFailedCount(), 0);
+            Assert.assertTrue(repository.getBatchCount() >= 5, "25 courses need at least 5 batches of 5");
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course"), 25);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_outcome"), 75);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_instructor"), 75);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_lesson"), 75);
+        }
+    }
+
+    @Test
+    public void resavingReplacesTheLists() throws Exception {
+        String url = newDatabase();
+        String link = "https://example.org/course/" + repeat('x', 1500);
+        try (CourseRepository repository = CourseRepository.open(url, null, null, 1, 5);
+             Connection check = DriverManager.getConnection(url)) {
+            repository.save(course(link, 4));
+            Assert.assertTrue(repository.flush(30000), "Queue was not drained");
+            repository.save(course(link, 2));
+            Assert.assertTrue(repository.flush(30000), "Queue was not drained");
+
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course"), 1);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_outcome"), 2);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_instructor"), 2);
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course_lesson"), 2);
+            try (PreparedStatement select = check.prepareStatement("SELECT link FROM course WHERE link_hash = ?")) {
+                select.setBytes(1, CourseRepository.linkHash(link));
+                try (ResultSet result = select.executeQuery()) {
+                    Assert.assertTrue(result.next(), "Course not found by its link hash");
+                    Assert.assertEquals(result.getString(1), link);
+                }
+            }
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void failedCourseDoesNotStopTheWriter() throws Exception {
+        String url = newDatabase();
+        String broken = "https://example.org/course/broken";
+        try (CourseRepository repository = CourseRepository.open(url, null, null, 1, 5);
+             Connection check = DriverManager.getConnection(url)) {
+            for (int i = 0; i < 4; i++) {
+                repository.save(course("https://example.org/course/" + i, 1));
+            }
+            // No snapshot: the upsert throws a RuntimeException, not an SQLException
+            repository.save(new CourseRecord(broken, null, new LinkedHashMap<String, Map<String, String>>()));
+            for (int i = 4; i < 8; i++) {
+                repository.save(course("https://example.org/course/" + i, 1));
+            }
+            Assert.assertTrue(repository.flush(30000), "Queue was not drained");
+
+            Assert.assertEquals(repository.getSavedCount(), 8);
+            Assert.assertEquals(repository.getFailedCount(), 1);
+            Assert.assertEquals(repository.getFailedLinks(), Collections.singleton(broken));
+            Assert.assertEquals(count(check, "SELECT COUNT(*) FROM course"), 8);
+
+            repository.save(course(broken, 1));
+            Assert.assertTrue(repository.flush(30000), "Queue was not drained");
+            Assert.assertTrue(repository.getFailedLinks().isEmpty(), "A saved link is still reported as failed");
+        }
+    }
+
+    private static String newDatabase() {
+        return "jdbc:h2:mem:courses" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    private static CourseRecord course(String link, int items) {
+        Map<String, String> instructors = new LinkedHashMap<>();
+        Map<String, String> lessons = new LinkedHashMap<>();
+        String[] outcomes = new String[items];
+        for (int i = 0; i < items; i++) {
+            instructors.put("Instructor " + i, "Role " + i);
+            lessons.put("Lesson " + i, link + "/lesson/" + i);
+            outcomes[i] = "Outcome " + i;
+        }
+        Map<String, Map<String, String>> outline = new LinkedHashMap<>();
+        outline.put("Section 1", lessons);
+        return new CourseRecord(link, new CourseSnapshot("Course", "Description", "4 weeks",
+                Arrays.asList(outcomes), instructors), outline);
+    }
+
+    private static int count(Connection connection, String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet result = statement.executeQuery()) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
+    private static String repeat(char c, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -1,14 +1,26 @@
 package Tz;
 
-import io.github.bonigarcia.wdm.WebDriverManager;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Parameters;
+import properties.PropertiesFile;
+import ui.driver.NetworkIdleMonitor;
+import ui.driver.RequestBlocker;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -16,20 +28,39 @@ import java.util.concurrent.TimeUnit;
  * for different browsers (Chrome, Firefox, Edge) and managing setup/teardown for test classes.
  * <p>
  * This class is meant to be extended by test classes to provide a common setup for Selenium WebDriver tests.
+ * The current driver is kept per thread so test methods can run in parallel; see {@link DriverPool}.
  */
 public class BaseSetup {
 
     static String driverPath = "resources\\drivers\\";
-    private static WebDriver driver;
+    private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    private static final Map<String, List<Long>> startupTimes = new ConcurrentHashMap<>();
     private String url = "https://google.com";
+    private boolean leasedFromPool;
 
     /**
-     * Get the currently initialized WebDriver instance.
+     * Get the WebDriver instance bound to the current thread.
      *
-     * @return WebDriver object
+     * @return WebDriver object, or null if the current thread has no driver
      */
     public static WebDriver getDriver() {
-        return driver;
+        return driver.get();
+    }
+
+    /**
+     * Bind an existing WebDriver to the current thread, e.g. one leased from {@link DriverPool}.
+     *
+     * @param webDriver The driver the current thread works with
+     */
+    static void bindDriver(WebDriver webDriver) {
+        driver.set(webDriver);
+    }
+
+    /**
+     * Remove the WebDriver binding of the current thread without quitting the driver.
+     */
+    static void unbindDriver() {
+        driver.remove();
     }
 
     /**
@@ -42,27 +73,81 @@ public class BaseSetup {
     }
 
     /**
-     * Initialize WebDriver based on the specified browser type.
+     * Initialize WebDriver based on the specified browser type, using the profile selected by
+     * {@code browserProfile} in configs.properties.
      *
      * @param browserType The browser to launch (chrome, firefox, edge)
      * @return Initialized WebDriver instance
      */
     public WebDriver setupDriver(String browserType) {
+        return setupDriver(browserType, BrowserProfile.active());
+    }
+
+    /**
+     * Initialize WebDriver based on the specified browser type and launch profile.
+     * The startup time is recorded per profile, see {@link #getStartupReport()}.
+     *
+     * @param browserType The browser to launch (chrome, firefox, edge)
+     * @param profile     The launch profile (headless, load strategy, ...)
+     * @return Initialized WebDriver instance
+     */
+    public WebDriver setupDriver(String browserType, BrowserProfile profile) {
+        long start = System.nanoTime();
         switch (browserType.trim().toLowerCase()) {
             case "chrome":
-                driver = initChromeDriver();
+                driver.set(initChromeDriver(profile));
                 break;
             case "firefox":
-                driver = initFirefoxDriver();
+                driver.set(initFirefoxDriver(profile));
                 break;
             case "edge":
-                driver = initEdgeDriver();
+                driver.set(initEdgeDriver(profile));
                 break;
             default:
                 System.out.println("Browser: " + browserType + " is invalid, Launching Chrome as browser of choice...");
-                driver = initChromeDriver();
+                driver.set(initChromeDriver(profile));
         }
-        return driver;
+        recordStartup(browserType.trim().toLowerCase() + "/" + profile.getName(), System.nanoTime() - start);
+
+        RequestBlocker.install(driver.get());
+        // Start tracking requests before the first navigation so page readiness sees them
+        if (Boolean.parseBoolean(PropertiesFile.getPropValue("networkIdle.enabled", "true"))) {
+            NetworkIdleMonitor.forDriver(driver.get());
+        }
+        return driver.get();
+    }
+
+    /**
+     * Get a summary of browser startup times, one line per browser/profile combination.
+     *
+     * @return String with count, average, min and max startup time in milliseconds
+     */
+    public static String getStartupReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, List<Long>> entry : new TreeMap<>(startupTimes).entrySet()) {
+            List<Long> times;
+            synchronized (entry.getValue()) {
+                times = new ArrayList<>(entry.getValue());
+            }
+            long min = Collections.min(times);
+            long max = Collections.max(times);
+            long total = 0;
+            for (long time : times) {
+                total += time;
+            }
+            report.append(String.format("Startup %s: %d launches, avg %d ms, min %d ms, max %d ms%n",
+                    entry.getKey(), times.size(), total / times.size(), min, max));
+        }
+        return report.toString();
+    }
+
+    private static void recordStartup(String key, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        List<Long> times = startupTimes.computeIfAbsent(key, k -> new ArrayList<>());
+        synchronized (times) {
+            times.add(millis);
+        }
+        System.out.println("Browser " + key + " started in " + millis + " ms");
     }
 
     /**
@@ -74,67 +159,105 @@ public class BaseSetup {
     private void setDriver(String browserType, String appURL) {
         switch (browserType) {
             case "chrome":
-                driver = initChromeDriver();
-                driver.navigate().to(appURL);
+                driver.set(initChromeDriver(BrowserProfile.active()));
+                driver.get().navigate().to(appURL);
                 break;
             case "firefox":
-                driver = initFirefoxDriver();
-                driver.navigate().to(appURL);
+                driver.set(initFirefoxDriver(BrowserProfile.active()));
+                driver.get().navigate().to(appURL);
                 break;
             default:
                 System.out.println("Browser: " + browserType + " is invalid, Launching Chrome as browser of choice...");
-                driver = initChromeDriver();
+                driver.set(initChromeDriver(BrowserProfile.active()));
         }
     }
 
     /**
      * Initialize and configure Chrome WebDriver.
      *
+     * @param profile The launch profile to apply
      * @return WebDriver instance for Chrome
      */
-    private WebDriver initChromeDriver() {
-        System.out.println("Launching Chrome browser...");
-        WebDriverManager.chromedriver().setup();
-        driver = new ChromeDriver();
-        driver.manage().window().maximize();
-        driver.manage().timeouts().pageLoadTimeout(30, TimeUnit.SECONDS);
-        driver.manage().timeouts().implicitlyWait(30, TimeUnit.SECONDS);
-        return driver;
+    private WebDriver initChromeDriver(BrowserProfile profile) {
+        System.out.println("Launching Chrome browser (profile " + profile + ")...");
+        DriverBinaryResolver.resolve("chrome");
+        WebDriver driver;
+        try {
+            driver = new ChromeDriver(profile.applyTo(new ChromeOptions()));
+        } catch (RuntimeException e) {
+            BrowserProfile.abandonUserDataDir();
+            throw e;
+        }
+        BrowserProfile.attachUserDataDir(driver);
+        return applyTimeouts(driver, profile, 30);
     }
 
     /**
      * Initialize and configure Edge WebDriver.
      *
+     * @param profile The launch profile to apply
      * @return WebDriver instance for Edge
      */
-    private WebDriver initEdgeDriver() {
-        System.out.println("Launching Edge browser...");
-        WebDriverManager.edgedriver().setup();
-        driver = new EdgeDriver();
-        driver.manage().window().maximize();
-        driver.manage().timeouts().pageLoadTimeout(30, TimeUnit.SECONDS);
-        driver.manage().timeouts().implicitlyWait(30, TimeUnit.SECONDS);
-        return driver;
+    private WebDriver initEdgeDriver(BrowserProfile profile) {
+        System.out.println("Launching Edge browser (profile " + profile + ")...");
+        DriverBinaryResolver.resolve("edge");
+        WebDriver driver;
+        try {
+            driver = new EdgeDriver(profile.applyTo(new EdgeOptions()));
+        } catch (RuntimeException e) {
+            BrowserProfile.abandonUserDataDir();
+            throw e;
+        }
+        BrowserProfile.attachUserDataDir(driver);
+        return applyTimeouts(driver, profile, 30);
     }
 
     /**
      * Initialize and configure Firefox WebDriver.
      *
+     * @param profile The launch profile to apply
      * @return WebDriver instance for Firefox
      */
-    private WebDriver initFirefoxDriver() {
-        System.out.println("Launching Firefox browser...");
-        WebDriverManager.firefoxdriver().setup();
-        driver = new FirefoxDriver();
-        driver.manage().window().maximize();
-        driver.manage().timeouts().pageLoadTimeout(30, TimeUnit.SECONDS);
-        driver.manage().timeouts().implicitlyWait(20, TimeUnit.SECONDS);
+    private WebDriver initFirefoxDriver(BrowserProfile profile) {
+        System.out.println("Launching Firefox browser (profile " + profile + ")...");
+        DriverBinaryResolver.resolve("firefox");
+        WebDriver driver;
+        try {
+            driver = new FirefoxDriver(profile.applyTo(new FirefoxOptions()));
+        } catch (RuntimeException e) {
+            BrowserProfile.abandonUserDataDir();
+            throw e;
+        }
+        BrowserProfile.attachUserDataDir(driver);
+        return applyTimeouts(driver, profile, 20);
+    }
+
+    /**
+     * Maximize the window (headed profiles only) and set the timeouts of the profile.
+     * The implicit wait is zero when {@code explicitWaitOnly=true} in configs.properties.
+     *
+     * @param driver             The freshly started driver
+     * @param profile            The launch profile
+     * @param defaultImplicitWait Implicit wait in seconds when the profile does not set one
+     * @return the same driver
+     */
+    private WebDriver applyTimeouts(WebDriver driver, BrowserProfile profile, long defaultImplicitWait) {
+        if (profile.shouldMaximize()) {
+            driver.manage().window().maximize();
+        }
+        driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(profile.getPageLoadTimeoutSeconds()));
+        // In explicit-wait-only mode lookups never block; waits go through WebDriverWait instead
+        long implicitWait = Boolean.parseBoolean(PropertiesFile.getPropValue("explicitWaitOnly", "false"))
+                ? 0 : profile.getImplicitWaitSeconds(defaultImplicitWait);
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWait));
         return driver;
     }
 
     /**
      * Setup method run before the test class is executed.
-     * Initializes WebDriver and opens the browser.
+     * Initializes WebDriver and opens the browser. When the driver pool recycles browsers of the
+     * requested type, a live browser is leased from {@link DriverPool} instead of launching a new one;
+     * a different {@code browserType} suite parameter launches that browser directly.
      *
      * @param browserType The browser to use for testing
      * @param webURL      The target URL to navigate to
@@ -143,7 +266,13 @@ public class BaseSetup {
     @BeforeClass
     public void initializeTestBaseSetup(String browserType, String webURL) {
         try {
-            setDriver(browserType, webURL);
+            DriverPool pool = DriverPool.getInstance();
+            if (pool.isRecycling() && pool.getBrowserType().trim().equalsIgnoreCase(browserType.trim())) {
+                pool.lease().navigate().to(webURL);
+                leasedFromPool = true;
+            } else {
+                setDriver(browserType, webURL);
+            }
         } catch (Exception e) {
             System.out.println("Error..." + e.getStackTrace());
         }
@@ -151,14 +280,23 @@ public class BaseSetup {
 
     /**
      * Teardown method run after the test class finishes.
-     * Quits the WebDriver instance if not null.
+     * Returns the browser to the pool for reset and reuse when recycling is enabled,
+     * otherwise quits the WebDriver instance if not null.
      *
      * @throws Exception if the quit operation fails
      */
     @AfterClass
     public void tearDown() throws Exception {
-        if(driver != null){
-            driver.quit();
+        if (leasedFromPool) {
+            leasedFromPool = false;
+            DriverPool.getInstance().release();
+        } else if(driver.get() != null){
+            try {
+                driver.get().quit();
+            } finally {
+                BrowserProfile.releaseUserDataDir(driver.get());
+                driver.remove();
+            }
         }
     }
 }
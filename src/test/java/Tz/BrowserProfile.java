@@ -0,0 +1,295 @@
+package Tz;
+
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.chromium.ChromiumOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import properties.PropertiesFile;
+
+import org.openqa.selenium.WebDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * BrowserProfile describes how a browser is launched: headless or not, page load strategy,
+ * disabled features, window size and user data directory.
+ * <p>
+ * Profiles are defined in configs.properties under {@code profile.<name>.*}; missing keys fall back
+ * to the behaviour of a plain headed browser:
+ * <pre>
+ *     browserProfile=ci
+ *     profile.ci.headless=true
+ *     profile.ci.pageLoadStrategy=eager
+ *     profile.ci.disableExtensions=true
+ *     profile.ci.disableGpu=true
+ *     profile.ci.disableImages=true
+ *     profile.ci.windowSize=1920,1080
+ *     profile.ci.userDataDir=target/browser-profiles/ci
+ *     profile.ci.implicitWait=0
+ *     profile.ci.pageLoadTimeout=30
+ * </pre>
+ * With a {@code userDataDir} every running browser gets a slot directory {@code worker-<n>} below it. A slot
+ * is locked while its browser runs and handed to the next browser once that one is quit (see
+ * {@link #releaseUserDataDir(WebDriver)}), so the same few directories, with their warm caches, are reused.
+ */
+public class BrowserProfile {
+
+    private static final Pattern WINDOW_SIZE = Pattern.compile("\\s*\\d+\\s*,\\s*\\d+\\s*");
+
+    /** Slot directories claimed in this JVM; other JVMs are kept out by the slot's file lock. */
+    private static final Set<File> claimedDirs = ConcurrentHashMap.newKeySet();
+    private static final Map<WebDriver, SlotLock> slotsByDriver = new ConcurrentHashMap<>();
+    /** The slot claimed for the browser the current thread is launching, until the driver exists. */
+    private static final ThreadLocal<SlotLock> launchingSlot = new ThreadLocal<>();
+
+    private final String name;
+    private final boolean headless;
+    private final PageLoadStrategy pageLoadStrategy;
+    private final boolean disableExtensions;
+    private final boolean disableGpu;
+    private final boolean disableImages;
+    private final String windowSize;
+    private final String userDataDir;
+    private final String implicitWaitSeconds;
+    private final long pageLoadTimeoutSeconds;
+
+    private BrowserProfile(String name) {
+        String prefix = "profile." + name + ".";
+        this.name = name;
+        this.headless = Boolean.parseBoolean(PropertiesFile.getPropValue(prefix + "headless", "false"));
+        this.pageLoadStrategy = PageLoadStrategy.fromString(PropertiesFile.getPropValue(prefix + "pageLoadStrategy", "normal").toLowerCase());
+        this.disableExtensions = Boolean.parseBoolean(PropertiesFile.getPropValue(prefix + "disableExtensions", "false"));
+        this.disableGpu = Boolean.parseBoolean(PropertiesFile.getPropValue(prefix + "disableGpu", "false"));
+        this.disableImages = Boolean.parseBoolean(PropertiesFile.getPropValue(prefix + "disableImages", "false"));
+        String size = PropertiesFile.getPropValue(prefix + "windowSize", null);
+        if (size != null && !size.trim().isEmpty() && !WINDOW_SIZE.matcher(size).matches()) {
+            throw new IllegalArgumentException(prefix + "windowSize must be <width>,<height>, e.g. 1920,1080, was: " + size);
+        }
+        this.windowSize = size == null || size.trim().isEmpty() ? null : size.replace(" ", "");
+        String dataDir = PropertiesFile.getPropValue(prefix + "userDataDir", null);
+        this.userDataDir = dataDir == null || dataDir.trim().isEmpty() ? null : dataDir.trim();
+        this.implicitWaitSeconds = PropertiesFile.getPropValue(prefix + "implicitWait", null);
+        this.pageLoadTimeoutSeconds = Long.parseLong(PropertiesFile.getPropValue(prefix + "pageLoadTimeout", "30"));
+    }
+
+    /**
+     * Loads the profile selected by {@code browserProfile} in configs.properties.
+     *
+     * @return the active BrowserProfile
+     */
+    public static BrowserProfile active() {
+        return load(PropertiesFile.getPropValue("browserProfile", "default"));
+    }
+
+    /**
+     * Loads a named profile from configs.properties.
+     *
+     * @param name The profile name, e.g. "ci"
+     * @return the BrowserProfile
+     */
+    public static BrowserProfile load(String name) {
+        return new BrowserProfile(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Get the implicit wait of the profile.
+     *
+     * @param browserDefault The wait used when the profile does not set one
+     * @return the implicit wait in seconds
+     */
+    public long getImplicitWaitSeconds(long browserDefault) {
+        return implicitWaitSeconds == null ? browserDefault : Long.parseLong(implicitWaitSeconds);
+    }
+
+    public long getPageLoadTimeoutSeconds() {
+        return pageLoadTimeoutSeconds;
+    }
+
+    /**
+     * Whether the window should be maximized after launch; only headed browsers without a fixed size are.
+     *
+     * @return true if the window should be maximized
+     */
+    public boolean shouldMaximize() {
+        return !headless && windowSize == null;
+    }
+
+    /**
+     * Applies the profile to Chrome or Edge options.
+     *
+     * @param options The options to configure
+     * @param <T>     ChromeOptions or EdgeOptions
+     * @return the same options, for chaining
+     */
+    public <T extends ChromiumOptions<?>> T applyTo(T options) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+        if (headless) {
+            options.addArguments("--headless=new");
+        }
+        if (disableExtensions) {
+            options.addArguments("--disable-extensions");
+        }
+        if (disableGpu) {
+            options.addArguments("--disable-gpu");
+        }
+        if (disableImages) {
+            Map<String, Object> prefs = new HashMap<>();
+            prefs.put("profile.managed_default_content_settings.images", 2);
+            options.setExperimentalOption("prefs", prefs);
+        }
+        if (windowSize != null) {
+            options.addArguments("--window-size=" + windowSize);
+        }
+        if (userDataDir != null) {
+            options.addArguments("--user-data-dir=" + claimUserDataDir());
+        }
+        return options;
+    }
+
+    /**
+     * Applies the profile to Firefox options.
+     *
+     * @param options The options to configure
+     * @return the same options, for chaining
+     */
+    public FirefoxOptions applyTo(FirefoxOptions options) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+        if (headless) {
+            options.addArguments("-headless");
+        }
+        if (disableExtensions) {
+            options.addPreference("extensions.enabledScopes", 0);
+        }
+        if (disableGpu) {
+            options.addPreference("layers.acceleration.disabled", true);
+        }
+        if (disableImages) {
+            options.addPreference("permissions.default.image", 2);
+        }
+        if (windowSize != null) {
+            String[] size = windowSize.split(",");
+            options.addArguments("--width=" + size[0], "--height=" + size[1]);
+        }
+        if (userDataDir != null) {
+            options.addArguments("-profile", claimUserDataDir());
+        }
+        return options;
+    }
+
+    /**
+     * Claims the lowest free slot directory for the browser the current thread is about to launch.
+     * The slot stays locked until {@link #attachUserDataDir(WebDriver)} and {@link #releaseUserDataDir(WebDriver)},
+     * or {@link #abandonUserDataDir()} if the launch fails.
+     *
+     * @return the absolute path of the directory
+     */
+    private String claimUserDataDir() {
+        abandonUserDataDir();
+        for (int slot = 1; ; slot++) {
+            File dir = new File(userDataDir, "worker-" + slot).getAbsoluteFile();
+            if (!claimedDirs.add(dir)) {
+                continue;
+            }
+            try {
+                dir.mkdirs();
+                FileChannel channel = FileChannel.open(new File(dir, ".slot.lock").toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    // Used by a browser of another JVM
+                    channel.close();
+                    claimedDirs.remove(dir);
+                    continue;
+                }
+                launchingSlot.set(new SlotLock(dir, channel, lock));
+                return dir.getPath();
+            } catch (IOException e) {
+                claimedDirs.remove(dir);
+                throw new IllegalStateException("Claiming user data directory " + dir + " Failed. Exception: " + e);
+            }
+        }
+    }
+
+    /**
+     * Ties the slot directory claimed during the current thread's launch to the new driver.
+     *
+     * @param driver the driver that was just started
+     */
+    static void attachUserDataDir(WebDriver driver) {
+        SlotLock slot = launchingSlot.get();
+        if (slot != null) {
+            launchingSlot.remove();
+            slotsByDriver.put(driver, slot);
+        }
+    }
+
+    /**
+     * Frees the slot directory of a driver that has been quit, so the next browser reuses it.
+     *
+     * @param driver the quit driver
+     */
+    static void releaseUserDataDir(WebDriver driver) {
+        SlotLock slot = slotsByDriver.remove(driver);
+        if (slot != null) {
+            slot.release();
+        }
+    }
+
+    /**
+     * Frees the slot directory claimed by the current thread if the browser could not be launched.
+     */
+    static void abandonUserDataDir() {
+        SlotLock slot = launchingSlot.get();
+        if (slot != null) {
+            launchingSlot.remove();
+            slot.release();
+        }
+    }
+
+    /**
+     * A locked slot directory.
+     */
+    private static final class SlotLock {
+        private final File dir;
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private SlotLock(File dir, FileChannel channel, FileLock lock) {
+            this.dir = dir;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        private void release() {
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Error while unlocking " + dir + ": " + e.getMessage());
+            } finally {
+                claimedDirs.remove(dir);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,549 @@
+package Tz;
+
+import PageFactory.*;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import properties.ConfigService;
+import properties.PropertiesFile;
+import ui.driver.SessionStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * CourseCrawler scrapes a list of course links with a bounded number of browsers.
+ * <p>
+ * Links are put on a work queue; each worker leases a driver from the {@link DriverPool} and takes
+ * links until the queue is empty. Every course gets its own timeout; a browser that times out is
+ * quit and replaced. Progress and throughput (courses/min) are printed while the crawl runs.
+ * <p>
+ * With {@code crawl.httpFirst=true} the public course page is first fetched without a browser
+ * (see {@link CoursePageHttpExtractor}). A browser is only leased for the authenticated outline, or
+ * when the HTTP response does not contain every field.
+ * <p>
+ * With a {@link CourseIndex} (see {@code crawl.incremental}) a course whose scraped content has the same
+ * fingerprint as last time is reported as unchanged and not handed on, so a refresh costs time in
+ * proportion to what changed. A 304 answer to the conditional request for the public page settles it
+ * without a browser, also when the outline is scraped: the stored record, outline included, is reused.
+ * The outline is only behind the login and has no validator of its own, so a lesson added without any
+ * change to the public page is only picked up once that page changes or the course is removed from the
+ * index (or the index file deleted). A course only enters the index once it has
+ * been handed on successfully, and {@link #bindSinks(String, boolean)} starts over when the sinks change.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     CourseCrawler crawler = CourseCrawler.fromConfig();
+ *     CourseCrawler.CrawlResult result = crawler.crawl(CourseCrawler.readLinks(path));
+ * </pre>
+ */
+public class CourseCrawler {
+
+    /**
+     * Scrapes one course with the given driver.
+     */
+    public interface CourseScraper {
+        /**
+         * @param driver        the driver to use.
+         * @param link          the course URL.
+         * @param knownSnapshot the course page metadata if it was already extracted over HTTP, otherwise null.
+         * @return the scraped course.
+         * @throws Exception if a page step fails.
+         */
+        CourseRecord scrape(WebDriver driver, String link, CourseSnapshot knownSnapshot) throws Exception;
+    }
+
+    private final DriverPool pool;
+    private final int concurrency;
+    private final Duration courseTimeout;
+    private final Duration progressInterval;
+    private final CourseScraper scraper;
+    private final CoursePageHttpExtractor httpExtractor;
+    private final boolean browserAlwaysNeeded;
+    private final CourseIndex courseIndex;
+
+    /**
+     * Creates a crawler.
+     *
+     * @param pool             the pool the workers lease their drivers from.
+     * @param concurrency      the number of courses scraped at the same time; capped at the pool size.
+     * @param courseTimeout    the maximum time to scrape one course.
+     * @param progressInterval how often progress is printed; zero to print it only at the end.
+     * @param scraper          the browser scraping steps run for each course.
+     */
+    public CourseCrawler(DriverPool pool, int concurrency, Duration courseTimeout, Duration progressInterval,
+                         CourseScraper scraper) {
+        this(pool, concurrency, courseTimeout, progressInterval, scraper, null, true);
+    }
+
+    /**
+     * Creates a crawler that tries to extract the public course page over HTTP first.
+     *
+     * @param pool                the pool the workers lease their drivers from.
+     * @param concurrency         the number of courses scraped at the same time; capped at the pool size.
+     * @param courseTimeout       the maximum time to scrape one course.
+     * @param progressInterval    how often progress is printed; zero to print it only at the end.
+     * @param scraper             the browser scraping steps run for each course.
+     * @param httpExtractor       the browserless extractor, or null to always use the browser.
+     * @param browserAlwaysNeeded whether the scraper needs the browser even when the HTTP extraction succeeded.
+     */
+    public CourseCrawler(DriverPool pool, int concurrency, Duration courseTimeout, Duration progressInterval,
+                         CourseScraper scraper, CoursePageHttpExtractor httpExtractor, boolean browserAlwaysNeeded) {
+        this(pool, concurrency, courseTimeout, progressInterval, scraper, httpExtractor, browserAlwaysNeeded, null);
+    }
+
+    /**
+     * Creates a crawler that skips courses that did not change since the last crawl.
+     *
+     * @param pool                the pool the workers lease their drivers from.
+     * @param concurrency         the number of courses scraped at the same time; capped at the pool size.
+     * @param courseTimeout       the maximum time to scrape one course.
+     * @param progressInterval    how often progress is printed; zero to print it only at the end.
+     * @param scraper             the browser scraping steps run for each course.
+     * @param httpExtractor       the browserless extractor, or null to always use the browser.
+     * @param browserAlwaysNeeded whether the scraper needs the browser even when the HTTP extraction succeeded.
+     * @param index               what each course looked like at its last scrape, or null to treat every course as changed.
+     */
+    public CourseCrawler(DriverPool pool, int concurrency, Duration courseTimeout, Duration progressInterval,
+                         CourseScraper scraper, CoursePageHttpExtractor httpExtractor, boolean browserAlwaysNeeded,
+                         CourseIndex index) {
+        if (progressInterval.isNegative()) {
+            throw new IllegalArgumentException("Progress interval must not be negative, was " + progressInterval);
+        }
+        this.pool = pool;
+        this.concurrency = Math.max(1, Math.min(concurrency, pool.getSize()));
+        this.courseTimeout = courseTimeout;
+        this.progressInterval = progressInterval;
+        this.scraper = scraper;
+        this.httpExtractor = httpExtractor;
+        this.browserAlwaysNeeded = browserAlwaysNeeded;
+        this.courseIndex = index;
+    }
+
+    /**
+     * Creates a crawler configured from configs.properties
+     * ({@code crawl.concurrency}, {@code crawl.courseTimeout}, {@code crawl.progressInterval} in seconds, 0 for no
+     * progress lines,
+     * {@code crawl.outline} to include the authenticated course outline and {@code crawl.httpFirst}
+     * to extract the public course page without a browser when possible). With {@code crawl.incremental}
+     * the {@link CourseIndex} at {@code crawl.indexPath} is used to skip unchanged courses.
+     *
+     * @return the configured CourseCrawler
+     * @throws IOException if the course index cannot be read.
+     */
+    public static CourseCrawler fromConfig() throws IOException {
+        return fromConfig(0);
+    }
+
+    /**
+     * Creates a crawler configured from configs.properties that leaves some pool drivers to other tests,
+     * e.g. when TestNG runs the crawl next to other test methods of a parallel suite. Otherwise a worker
+     * would wait {@code driverLeaseTimeout} for a driver held by another test and then fail its course.
+     *
+     * @param reservedDrivers the number of pool drivers the crawl must not count on; at least one worker runs.
+     * @return the configured CourseCrawler
+     * @throws IOException if the course index cannot be read.
+     */
+    public static CourseCrawler fromConfig(int reservedDrivers) throws IOException {
+        DriverPool pool = DriverPool.getInstance();
+        ConfigService config = ConfigService.getInstance();
+        boolean withOutline = config.getBoolean("crawl.outline", true);
+        boolean httpFirst = config.getBoolean("crawl.httpFirst", true);
+        int available = Math.max(1, pool.getSize() - reservedDrivers);
+        return new CourseCrawler(pool,
+                Math.min(available, config.getInt("crawl.concurrency", available)),
+                Duration.ofSeconds(config.getLong("crawl.courseTimeout", 180)),
+                Duration.ofSeconds(config.getLong("crawl.progressInterval", 10)),
+                (driver, link, knownSnapshot) -> scrapeCourse(driver, link, withOutline, knownSnapshot),
+                httpFirst ? new CoursePageHttpExtractor() : null,
+                withOutline,
+                CourseIndex.fromConfig().orElse(null));
+    }
+
+    /**
+     * Reads course links from a text file, one per line. Blank lines and lines starting with # are skipped.
+     *
+     * @param file the file with course links.
+     * @return the links in file order.
+     * @throws IOException if the file cannot be read.
+     */
+    public static List<String> readLinks(Path file) throws IOException {
+        List<String> links = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String link = line.trim();
+            if (!link.isEmpty() && !link.startsWith("#")) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Scrapes a course: course page metadata, then optionally the enrollment flow followed by the
+     * course outline. The login is skipped when the {@link SessionStore} holds a valid session.
+     *
+     * @param driver        the driver to use.
+     * @param link          the course URL.
+     * @param withOutline   whether to log in and scrape the course outline.
+     * @param knownSnapshot the metadata already extracted over HTTP, or null to read it in the browser.
+     * @return the scraped course.
+     * @throws Exception if a page step fails.
+     */
+    public static CourseRecord scrapeCourse(WebDriver driver, String link, boolean withOutline,
+                                            CourseSnapshot knownSnapshot) throws Exception {
+        PageObjectFactory pageFactory = new PageObjectFactory();
+        SessionStore sessions = SessionStore.getInstance();
+        // Seed the browser with a stored login before the first navigation
+        long sessionGeneration = withOutline ? sessions.restore(driver) : -1;
+
+        driver.get(link);
+        CourseSnapshot snapshot = knownSnapshot != null
+                ? knownSnapshot
+                : pageFactory.getPage(driver, CoursePage.class).getCourseSnapshot();
+        if (!withOutline) {
+            return CourseRecord.fromOutline(link, snapshot, new LinkedHashMap<String, Object>());
+        }
+
+        CoursePage coursePage = pageFactory.getPage(driver, CoursePage.class);
+        LoginPage loginPage = pageFactory.getPage(driver, LoginPage.class);
+        coursePage.clickEnroll();
+        if (loginPage.isLoginRequired(CoursePlanPage.btn_useFreePlan)) {
+            boolean loggedIn = sessions.loginOnce(driver, sessionGeneration, () -> {
+                loginPage.clickSignIn();
+                loginPage.login(PropertiesFile.getPropValue("email"), PropertiesFile.getPropValue("password"));
+                loginPage.waitForLoginCompleted();
+            });
+            if (!loggedIn) {
+                // Another worker logged in meanwhile and its session was applied; start the enrollment again
+                driver.get(link);
+                coursePage.clickEnroll();
+            }
+        }
+        pageFactory.getPage(driver, CoursePlanPage.class).useFreePlan();
+        return CourseRecord.fromOutline(link, snapshot, pageFactory.getPage(driver, CourseDetailPage.class).extractCourseOutline());
+    }
+
+    /**
+     * Scrapes all links and waits until every course is done or failed.
+     *
+     * @param links the course URLs.
+     * @return the scraped courses in input order, the failures and throughput figures.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public CrawlResult crawl(List<String> links) throws InterruptedException {
+        return crawl(links, null);
+    }
+
+    /**
+     * Scrapes all links, handing each course to {@code onRecord} as soon as it is scraped, and waits
+     * until every course is done or failed.
+     *
+     * @param links    the course URLs.
+     * @param onRecord called on the worker thread with each changed course, in completion order; may be null.
+     *                 Courses found unchanged in the {@link CourseIndex} are not passed on. An exception thrown
+     *                 by it fails the course, which is then not recorded in the index, so the next crawl
+     *                 hands it on again.
+     * @return the scraped courses in input order, the failures and throughput figures.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public CrawlResult crawl(List<String> links, Consumer<CourseRecord> onRecord) throws InterruptedException {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < links.size(); i++) {
+            queue.add(i);
+        }
+
+        Map<Integer, CourseRecord> records = new ConcurrentHashMap<>();
+        Set<Integer> changed = ConcurrentHashMap.newKeySet();
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        AtomicInteger finished = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        if (!progressInterval.isZero()) {
+            progress.scheduleAtFixedRate(() -> System.out.println(
+                            progressLine(finished.get(), failures.size(), links.size(), System.nanoTime() - start)),
+                    progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        ExecutorService scrapers = Executors.newCachedThreadPool();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(() -> {
+                    Integer index;
+                    while ((index = queue.poll()) != null) {
+                        String link = links.get(index);
+                        try {
+                            Scraped scraped = scrapeIfChanged(scrapers, link);
+                            if (scraped.changed && onRecord != null) {
+                                try {
+                                    onRecord.accept(scraped.record);
+                                } catch (Exception e) {
+                                    throw new Exception("Handing over " + link + " Failed. Exception: " + e);
+                                }
+                            }
+                            // Only remember the course once it was handed on, so a failed hand-off is retried
+                            if (scraped.fingerprint != null) {
+                                courseIndex.put(scraped.record, scraped.fingerprint, scraped.etag, scraped.lastModified);
+                            }
+                            records.put(index, scraped.record);
+                            if (scraped.changed) {
+                                changed.add(index);
+                            }
+                        } catch (Exception e) {
+                            failures.put(link, String.valueOf(e.getMessage()));
+                            System.out.println("Failed to crawl " + link + ": " + e.getMessage());
+                        } finally {
+                            finished.incrementAndGet();
+                        }
+                    }
+                    pool.release();
+                });
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println(progressLine(finished.get(), failures.size(), links.size(), System.nanoTime() - start));
+            }
+        } finally {
+            workers.shutdownNow();
+            scrapers.shutdownNow();
+            progress.shutdownNow();
+        }
+
+        List<CourseRecord> ordered = new ArrayList<>();
+        List<CourseRecord> orderedChanged = new ArrayList<>();
+        for (int i = 0; i < links.size(); i++) {
+            CourseRecord record = records.get(i);
+            if (record != null) {
+                ordered.add(record);
+                if (changed.contains(i)) {
+                    orderedChanged.add(record);
+                }
+            }
+        }
+        if (courseIndex != null) {
+            try {
+                courseIndex.save();
+            } catch (IOException e) {
+                System.out.println("Could not save the course index: " + e.getMessage());
+            }
+        }
+        CrawlResult result = new CrawlResult(ordered, orderedChanged, failures, Duration.ofNanos(System.nanoTime() - start));
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Ties the index to the sinks the changed courses are handed to. When they differ from the sinks the
+     * index was built for, or one of them is empty (e.g. a database that was just enabled), the index is
+     * cleared, so this crawl hands every course on.
+     *
+     * @param signature identifies the current sinks, e.g. their paths and URLs.
+     * @param emptySink whether one of the sinks holds no courses yet.
+     */
+    public void bindSinks(String signature, boolean emptySink) {
+        if (courseIndex != null) {
+            courseIndex.bindSinks(signature, emptySink);
+        }
+    }
+
+    /**
+     * Drops courses from the index after a sink reported, after the crawl, that it could not store them
+     * (e.g. a failed database batch), so the next crawl hands them on again.
+     *
+     * @param links the course URLs to forget.
+     */
+    public void forget(Collection<String> links) {
+        if (courseIndex == null || links.isEmpty()) {
+            return;
+        }
+        for (String link : links) {
+            courseIndex.remove(link);
+        }
+        try {
+            courseIndex.save();
+        } catch (IOException e) {
+            System.out.println("Could not save the course index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Scrapes one course unless it is known to be unchanged.
+     * <p>
+     * With an index, the public page request carries the stored ETag / Last-Modified. A 304 answer ends
+     * the work for this course before any browser is leased and returns the stored record, including the
+     * outline even when the browser would be needed for it (see the class comment). Otherwise the course
+     * is scraped and the fingerprint compared with the stored one, so an unchanged course is still not
+     * handed on.
+     * The index itself is only updated by the caller, after the hand-off.
+     */
+    private Scraped scrapeIfChanged(ExecutorService scrapers, String link) throws Exception {
+        CourseIndex.Entry known = courseIndex == null ? null : courseIndex.get(link);
+        CourseSnapshot knownSnapshot = null;
+        String etag = known == null ? null : known.getEtag();
+        String lastModified = known == null ? null : known.getLastModified();
+        if (httpExtractor != null) {
+            CoursePageHttpExtractor.PageResponse page = httpExtractor.fetch(link, etag, lastModified);
+            if (page.isNotModified() && known != null) {
+                return new Scraped(known.getRecord(), false, null, null, null);
+            }
+            knownSnapshot = page.getSnapshot().orElse(null);
+            // A failed request tells nothing about the page; keep the validators of the last good answer
+            if (!page.isFailed()) {
+                etag = page.getEtag();
+                lastModified = page.getLastModified();
+            }
+        }
+
+        CourseRecord record = scrapeWithTimeout(scrapers, link, knownSnapshot);
+        if (courseIndex == null) {
+            return new Scraped(record, true, null, null, null);
+        }
+        String fingerprint = record.fingerprint();
+        return new Scraped(record, known == null || !fingerprint.equals(known.getFingerprint()),
+                fingerprint, etag, lastModified);
+    }
+
+    /**
+     * Scrapes one course. When the public page was already extracted over HTTP and the browser is not
+     * needed, it is used as is; the browser part runs on a separate thread so a hanging browser call
+     * cannot block the worker forever. On timeout the browser is quit, which unblocks the scraping
+     * thread, and the pool replaces it. A browser error hands the driver back to the pool, which drops it
+     * if its session is gone and resets it otherwise, so the next course does not inherit a broken browser.
+     */
+    private CourseRecord scrapeWithTimeout(ExecutorService scrapers, String link, CourseSnapshot knownSnapshot)
+            throws Exception {
+        if (knownSnapshot != null && !browserAlwaysNeeded) {
+            return CourseRecord.fromOutline(link, knownSnapshot, new LinkedHashMap<String, Object>());
+        }
+
+        WebDriver driver = pool.lease();
+        Future<CourseRecord> future = scrapers.submit(() -> scraper.scrape(driver, link, knownSnapshot));
+        try {
+            CourseRecord record = future.get(courseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            // The worker keeps its lease for the whole crawl, so count courses towards driverPool.maxUses
+            pool.completeUse();
+            return record;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            try {
+                driver.quit();
+            } catch (Exception quitError) {
+                System.out.println("Error while quitting timed out WebDriver: " + quitError.getMessage());
+            }
+            pool.release();
+            throw new Exception("Timed out after " + courseTimeout.getSeconds() + "s");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WebDriverException) {
+                pool.release();
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static String progressLine(int finished, int failed, int total, long elapsedNanos) {
+        double minutes = elapsedNanos / 60_000_000_000.0;
+        return String.format("Crawled %d/%d courses (%d failed), %.1f courses/min",
+                finished, total, failed, minutes > 0 ? finished / minutes : 0.0);
+    }
+
+    /**
+     * A scraped course, whether it differs from the last crawl, and what to store in the index for it
+     * (fingerprint null when there is nothing to store).
+     */
+    private static final class Scraped {
+        private final CourseRecord record;
+        private final boolean changed;
+        private final String fingerprint;
+        private final String etag;
+        private final String lastModified;
+
+        Scraped(CourseRecord record, boolean changed, String fingerprint, String etag, String lastModified) {
+            this.record = record;
+            this.changed = changed;
+            this.fingerprint = fingerprint;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Outcome of a crawl.
+     */
+    public static final class CrawlResult {
+        private final List<CourseRecord> records;
+        private final List<CourseRecord> changed;
+        private final Map<String, String> failures;
+        private final Duration elapsed;
+
+        CrawlResult(List<CourseRecord> records, List<CourseRecord> changed, Map<String, String> failures,
+                    Duration elapsed) {
+            this.records = Collections.unmodifiableList(records);
+            this.changed = Collections.unmodifiableList(changed);
+            this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return every course that did not fail, in the order of the input links; unchanged courses
+         *         are the records stored in the {@link CourseIndex}.
+         */
+        public List<CourseRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the courses that are new or changed since the last crawl, in the order of the input links.
+         */
+        public List<CourseRecord> getChangedRecords() {
+            return changed;
+        }
+
+        /**
+         * @return failed course link → error message.
+         */
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return finished courses (scraped or failed) per minute.
+         */
+        public double getCoursesPerMinute() {
+            double minutes = elapsed.toNanos() / 60_000_000_000.0;
+            return minutes > 0 ? (records.size() + failures.size()) / minutes : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Crawl finished: %d scraped (%d changed, %d unchanged), %d failed in %ds (%.1f courses/min)",
+                    records.size(), changed.size(), records.size() - changed.size(), failures.size(),
+                    elapsed.getSeconds(), getCoursesPerMinute());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package Tz;
+
+import PageFactory.CoursePageHttpExtractor;
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls course pages served by a local HTTP server. The pages hold every public field, so no browser
+ * is leased; a scraper that is called anyway fails the course. Pages under {@code /cached} carry an ETag
+ * and answer a matching conditional request with 304.
+ */
+public class CourseCrawlerTest {
+
+    private static final String CACHED_ETAG = "\"v1\"";
+
+    private final AtomicInteger notModifiedAnswers = new AtomicInteger();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/cached")) {
+                exchange.getResponseHeaders().set("ETag", CACHED_ETAG);
+                if (CACHED_ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedAnswers.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] body = coursePage("Course " + path, "About " + path).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void crawlsPublicPagesWithoutABrowser() throws Exception {
+        List<String> links = Arrays.asList(baseUrl + "/a", baseUrl + "/b", baseUrl + "/c", baseUrl + "/d");
+        List<String> handedOn = Collections.synchronizedList(new ArrayList<String>());
+
+        CourseCrawler.CrawlResult result = crawler(Duration.ofSeconds(60)).crawl(links, record -> handedOn.add(record.getLink()));
+
+        Assert.assertTrue(result.getFailures().isEmpty(), "Failures: " + result.getFailures());
+        List<String> scraped = new ArrayList<>();
+        for (CourseRecord record : result.getRecords()) {
+            scraped.add(record.getLink());
+        }
+        Assert.assertEquals(scraped, links, "Records are not in input order");
+        Assert.assertEquals(result.getRecords().get(1).getSnapshot().getName(), "Course /b");
+        Assert.assertEquals(result.getChangedRecords().size(), links.size());
+        Assert.assertEquals(handedOn.size(), links.size());
+    }
+
+    @Test
+    public void failedHandOffFailsOnlyThatCourse() throws Exception {
+        List<String> links = Arrays.asList(baseUrl + "/a", baseUrl + "/broken", baseUrl + "/c");
+
+        CourseCrawler.CrawlResult result = crawler(Duration.ofSeconds(60)).crawl(links, record -> {
+            if (record.getLink().endsWith("/broken")) {
+                throw new IllegalStateException("sink is down");
+            }
+        });
+
+        Assert.assertEquals(result.getFailures().keySet(), Collections.singleton(baseUrl + "/broken"));
+        Assert.assertEquals(result.getRecords().size(), 2);
+    }
+
+    @Test
+    public void zeroProgressIntervalDisablesProgressLines() throws Exception {
+        CourseCrawler.CrawlResult result = crawler(Duration.ZERO).crawl(Collections.singletonList(baseUrl + "/a"));
+
+        Assert.assertEquals(result.getRecords().size(), 1);
+    }
+
+    @Test
+    public void notModifiedPageReusesTheStoredOutlineWithoutABrowser() throws Exception {
+        String link = baseUrl + "/cached";
+        Map<String, Map<String, String>> outline = new LinkedHashMap<>();
+        outline.put("Section 1", Collections.singletonMap("Lesson 1", link + "/lesson-1"));
+        CourseRecord stored = new CourseRecord(link, new CourseSnapshot("Course /cached", "About /cached", "3 weeks",
+                Collections.singletonList("Outcome 1"), new LinkedHashMap<String, String>()), outline);
+        CourseIndex index = CourseIndex.load(Files.createTempDirectory("index").resolve("courses.ndjson"));
+        index.put(stored, stored.fingerprint(), CACHED_ETAG, null);
+        List<String> handedOn = Collections.synchronizedList(new ArrayList<String>());
+        int answersBefore = notModifiedAnswers.get();
+
+        // The outline needs the browser, but the scraper fails every course it is called for
+        CourseCrawler crawler = new CourseCrawler(new DriverPool("chrome", 2, 5), 1, Duration.ofSeconds(30),
+                Duration.ZERO, (driver, url, knownSnapshot) -> {
+                    throw new Exception("No browser expected for " + url);
+                },
+                new CoursePageHttpExtractor(Duration.ofSeconds(5), "CourseCrawlerTest"), true, index);
+        CourseCrawler.CrawlResult result = crawler.crawl(Collections.singletonList(link),
+                record -> handedOn.add(record.getLink()));
+
+        Assert.assertTrue(result.getFailures().isEmpty(), "Failures: " + result.getFailures());
+        Assert.assertEquals(notModifiedAnswers.get() - answersBefore, 1, "No conditional request was answered with 304");
+        Assert.assertEquals(result.getRecords().size(), 1);
+        Assert.assertEquals(result.getRecords().get(0).getOutline(), outline);
+        Assert.assertEquals(result.getRecords().get(0).fingerprint(), stored.fingerprint());
+        Assert.assertTrue(result.getChangedRecords().isEmpty());
+        Assert.assertTrue(handedOn.isEmpty(), "Unchanged course was handed on");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void negativeProgressIntervalIsRejected() {
+        crawler(Duration.ofSeconds(-1));
+    }
+
+    private static CourseCrawler crawler(Duration progressInterval) {
+        return new CourseCrawler(new DriverPool("chrome", 2, 5), 2, Duration.ofSeconds(30), progressInterval,
+                (driver, link, knownSnapshot) -> {
+                    throw new Exception("No browser expected for " + link);
+                },
+                new CoursePageHttpExtractor(Duration.ofSeconds(5), "CourseCrawlerTest"), false);
+    }
+
+    /**
+     * A course page with the markup {@link CoursePageHttpExtractor#parse(String, String)} reads.
+     */
+    static String coursePage(String name, String description) {
+        return "<html><body><div id='main-content'><div><div><div><div></div><div></div><div></div><div></div>"
+                + "<div><div><h1>" + name + "</h1></div></div></div></div></div></div>"
+                + "<p class='p'>" + description + "</p><div class='h4 mb-0'>3 weeks</div>"
+                + "<div class='mt-2 html-data'><ul><li>Outcome 1</li></ul></div></body></html>";
+    }
+}
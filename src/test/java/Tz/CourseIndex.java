@@ -0,0 +1,241 @@
+package Tz;
+
+import DataExport.CourseExporter;
+import PageFactory.CourseRecord;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import properties.PropertiesFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local index of what every course looked like when it was last scraped, used to skip unchanged courses.
+ * <p>
+ * Per course link it keeps the HTTP validators of the public page ({@code ETag}, {@code Last-Modified}),
+ * the {@link CourseRecord#fingerprint()} and the record itself. The crawler sends the validators as a
+ * conditional request before leasing a browser, and compares fingerprints after scraping; in both cases
+ * an unchanged course is served from the stored record and not handed to documents or exporters again.
+ * <p>
+ * The index only describes what the sinks (exporter, database) have received, so it records which sinks
+ * it fed; {@link #bindSinks(String, boolean)} clears it when they change or one of them is empty.
+ * <p>
+ * The index is an NDJSON file, loaded once and rewritten atomically by {@link #save()}: a first line
+ * {@code {"sinks": ...}}, then one line per course. Entries of links that are not crawled in a run are kept.
+ */
+public class CourseIndex {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile String sinks;
+    private volatile boolean dirty;
+
+    private CourseIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads an index; a missing file gives an empty index. Unreadable lines are skipped, so those
+     * courses are simply scraped again.
+     *
+     * @param file the index file.
+     * @return the index.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    public static CourseIndex load(Path file) throws IOException {
+        CourseIndex index = new CourseIndex(file);
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = MAPPER.readTree(line);
+                    if (!node.has("course")) {
+                        index.sinks = text(node, "sinks");
+                        continue;
+                    }
+                    CourseRecord record = CourseExporter.readCourse(node.path("course"));
+                    index.entries.put(record.getLink(), new Entry(text(node, "etag"), text(node, "lastModified"),
+                            text(node, "fingerprint"), record));
+                } catch (Exception e) {
+                    System.out.println("Skipping unreadable course index entry: " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("Loaded " + index.entries.size() + " courses from " + file.getFileName());
+        return index;
+    }
+
+    /**
+     * Loads the index configured in configs.properties ({@code crawl.incremental} and {@code crawl.indexPath}).
+     *
+     * @return the index, or empty if incremental crawling is disabled.
+     * @throws IOException if the index cannot be read.
+     */
+    public static Optional<CourseIndex> fromConfig() throws IOException {
+        if (!Boolean.parseBoolean(PropertiesFile.getPropValue("crawl.incremental", "true"))) {
+            return Optional.empty();
+        }
+        String projectPath = System.getProperty("user.dir") + "/";
+        return Optional.of(load(Paths.get(projectPath
+                + PropertiesFile.getPropValue("crawl.indexPath", "ExportData/Index/courses.ndjson"))));
+    }
+
+    /**
+     * @param link the course URL.
+     * @return the entry from the last successful scrape, or null if the course is new.
+     */
+    public Entry get(String link) {
+        return entries.get(link);
+    }
+
+    /**
+     * Records a successful scrape.
+     *
+     * @param record       the scraped course.
+     * @param fingerprint  its {@link CourseRecord#fingerprint()}.
+     * @param etag         the ETag of the public page, or null.
+     * @param lastModified the Last-Modified header of the public page, or null.
+     */
+    public void put(CourseRecord record, String fingerprint, String etag, String lastModified) {
+        entries.put(record.getLink(), new Entry(etag, lastModified, fingerprint, record));
+        dirty = true;
+    }
+
+    /**
+     * Forgets a course, so the next crawl treats it as new.
+     *
+     * @param link the course URL.
+     */
+    public void remove(String link) {
+        if (entries.remove(link) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Ties the index to the sinks it feeds. If it was built for other sinks (or by a version that did not
+     * record them), or a sink holds no courses yet, every entry is dropped so all courses are handed on again.
+     *
+     * @param signature identifies the current sinks, e.g. their paths and URLs.
+     * @param emptySink whether one of the sinks holds no courses yet.
+     */
+    public synchronized void bindSinks(String signature, boolean emptySink) {
+        if (!entries.isEmpty() && (emptySink || !signature.equals(sinks))) {
+            System.out.println("Course index was built for sinks [" + sinks + "], now [" + signature + "]"
+                    + (emptySink ? " with an empty sink" : "") + ": crawling every course again");
+            entries.clear();
+            dirty = true;
+        }
+        if (!signature.equals(sinks)) {
+            sinks = signature;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file and renames it over the old one, if anything changed.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            List<Entry> snapshot = new ArrayList<>(entries.values());
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonGenerator generator = JSON.createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                generator.writeStartObject();
+                generator.writeStringField("sinks", sinks);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                for (Entry entry : snapshot) {
+                    generator.writeStartObject();
+                    generator.writeStringField("etag", entry.etag);
+                    generator.writeStringField("lastModified", entry.lastModified);
+                    generator.writeStringField("fingerprint", entry.fingerprint);
+                    generator.writeFieldName("course");
+                    CourseExporter.writeCourse(generator, entry.record);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * What a course looked like at its last successful scrape.
+     */
+    public static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final String fingerprint;
+        private final CourseRecord record;
+
+        Entry(String etag, String lastModified, String fingerprint, CourseRecord record) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+            this.record = record;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public CourseRecord getRecord() {
+            return record;
+        }
+    }
+}
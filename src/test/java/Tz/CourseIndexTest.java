@@ -0,0 +1,131 @@
+package Tz;
+
+import PageFactory.CourseRecord;
+import PageFactory.CourseSnapshot;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Saves course indexes into a temporary directory and loads them back the way the next crawl does.
+ */
+public class CourseIndexTest {
+
+    @Test
+    public void entriesSurviveSaveAndLoad() throws Exception {
+        Path file = Files.createTempDirectory("index").resolve("courses.ndjson");
+        CourseRecord record = course("https://example.com/a");
+        CourseIndex index = CourseIndex.load(file);
+        index.bindSinks("ndjson /data/courses", false);
+        index.put(record, record.fingerprint(), "\"v1\"", "Wed, 01 Jan 2025 00:00:00 GMT");
+        index.put(course("https://example.com/b"), "fp-b", null, null);
+        index.save();
+
+        CourseIndex loaded = CourseIndex.load(file);
+        CourseIndex.Entry entry = loaded.get("https://example.com/a");
+        Assert.assertEquals(entry.getEtag(), "\"v1\"");
+        Assert.assertEquals(entry.getLastModified(), "Wed, 01 Jan 2025 00:00:00 GMT");
+        Assert.assertEquals(entry.getFingerprint(), record.fingerprint());
+        Assert.assertEquals(entry.getRecord().fingerprint(), record.fingerprint(), "Stored record differs");
+        Assert.assertEquals(entry.getRecord().getOutline(), record.getOutline());
+        Assert.assertEquals(entry.getRecord().getSnapshot().getInstructors(), record.getSnapshot().getInstructors());
+        Assert.assertNull(loaded.get("https://example.com/b").getEtag());
+
+        // Same sinks: nothing to crawl again
+        loaded.bindSinks("ndjson /data/courses", false);
+        Assert.assertNotNull(loaded.get("https://example.com/a"));
+    }
+
+    @Test
+    public void unreadableLinesAreSkipped() throws Exception {
+        Path file = Files.createTempDirectory("index").resolve("courses.ndjson");
+        CourseIndex index = CourseIndex.load(file);
+        index.put(course("https://example.com/a"), "fp-a", null, null);
+        index.save();
+        Files.write(file, "{\"course\": [truncated\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CourseIndex loaded = CourseIndex.load(file);
+        Assert.assertEquals(loaded.get("https://example.com/a").getFingerprint(), "fp-a");
+    }
+
+    @Test
+    public void otherSinksClearTheIndex() throws Exception {
+        Path file = Files.createTempDirectory("index").resolve("courses.ndjson");
+        CourseIndex index = CourseIndex.load(file);
+        index.bindSinks("ndjson /data/courses", false);
+        index.put(course("https://example.com/a"), "fp-a", null, null);
+        index.save();
+
+        CourseIndex loaded = CourseIndex.load(file);
+        loaded.bindSinks("csv /data/courses", false);
+        Assert.assertNull(loaded.get("https://example.com/a"), "Index kept courses the new sink never received");
+
+        // The cleared index and its new sinks are what the next crawl starts from
+        loaded.save();
+        CourseIndex reloaded = CourseIndex.load(file);
+        reloaded.put(course("https://example.com/b"), "fp-b", null, null);
+        reloaded.bindSinks("csv /data/courses", false);
+        Assert.assertNotNull(reloaded.get("https://example.com/b"));
+    }
+
+    @Test
+    public void emptySinkClearsTheIndex() throws Exception {
+        CourseIndex index = CourseIndex.load(Files.createTempDirectory("index").resolve("courses.ndjson"));
+        index.bindSinks("ndjson /data/courses, jdbc:mysql://db/courses", false);
+        index.put(course("https://example.com/a"), "fp-a", null, null);
+
+        index.bindSinks("ndjson /data/courses, jdbc:mysql://db/courses", true);
+
+        Assert.assertNull(index.get("https://example.com/a"), "Index kept courses an empty sink does not have");
+    }
+
+    @Test
+    public void indexWithoutSinksIsCleared() throws Exception {
+        Path file = Files.createTempDirectory("index").resolve("courses.ndjson");
+        CourseIndex index = CourseIndex.load(file);
+        index.put(course("https://example.com/a"), "fp-a", null, null);
+        index.save();
+
+        CourseIndex loaded = CourseIndex.load(file);
+        loaded.bindSinks("ndjson /data/courses", false);
+
+        Assert.assertNull(loaded.get("https://example.com/a"));
+    }
+
+    @Test
+    public void removedCourseIsGoneAfterSaving() throws Exception {
+        Path file = Files.createTempDirectory("index").resolve("courses.ndjson");
+        CourseIndex index = CourseIndex.load(file);
+        index.put(course("https://example.com/a"), "fp-a", null, null);
+        index.put(course("https://example.com/b"), "fp-b", null, null);
+        index.save();
+
+        index.remove("https://example.com/a");
+        index.save();
+
+        CourseIndex loaded = CourseIndex.load(file);
+        Assert.assertNull(loaded.get("https://example.com/a"));
+        Assert.assertEquals(loaded.get("https://example.com/b").getFingerprint(), "fp-b");
+    }
+
+    private static CourseRecord course(String link) {
+        Map<String, String> instructors = new LinkedHashMap<>();
+        instructors.put("Jane Doe", "Author");
+        Map<String, Map<String, String>> outline = new LinkedHashMap<>();
+        Map<String, String> lessons = new LinkedHashMap<>();
+        lessons.put("Lesson 1", link + "/1");
+        lessons.put("Lesson 2", link + "/2");
+        outline.put("Section 1", lessons);
+        outline.put("Section 2", Collections.singletonMap("Lesson 3", link + "/3"));
+        return new CourseRecord(link, new CourseSnapshot("Course " + link, "About " + link, "3 weeks",
+                Arrays.asList("Outcome 1", "Outcome 2"), instructors), outline);
+    }
+}
@@ -0,0 +1,179 @@
+package Tz;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import properties.PropertiesFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DriverBinaryResolver finds the driver binary (chromedriver, msedgedriver, geckodriver) for the
+ * installed browser without going through WebDriverManager's online resolution on every launch.
+ * <p>
+ * Resolution happens once per browser and JVM; every later call, from any pool worker, returns the
+ * cached path. Across JVMs a local index maps "browser.majorVersion" to the driver path, so the network
+ * is only used when the installed browser version has never been resolved before. The index location
+ * is set by {@code driverIndexPath} in configs.properties.
+ */
+public final class DriverBinaryResolver {
+
+    private static final ConcurrentHashMap<String, String> resolvedDrivers = new ConcurrentHashMap<>();
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)\\.\\d+");
+
+    private DriverBinaryResolver() {
+    }
+
+    /**
+     * Makes the driver binary for the given browser available to Selenium.
+     * <p>
+     * Concurrent callers for the same browser wait for a single resolution.
+     *
+     * @param browserType The browser (chrome, edge, firefox)
+     * @return the absolute path of the driver binary, or null if none was found and Selenium has to locate it
+     */
+    public static String resolve(String browserType) {
+        String browser = browserType.trim().toLowerCase();
+        // A null path is not cached, so the next launch tries again
+        String driverPath = resolvedDrivers.computeIfAbsent(browser, DriverBinaryResolver::resolveOnce);
+        if (driverPath == null) {
+            System.out.println("No driver binary resolved for " + browser + ", leaving it to Selenium");
+            return null;
+        }
+        System.setProperty(driverProperty(browser), driverPath);
+        return driverPath;
+    }
+
+    private static String resolveOnce(String browser) {
+        WebDriverManager manager = managerFor(browser);
+        Optional<String> majorVersion = detectBrowserMajorVersion(manager);
+        Path indexPath = Paths.get(PropertiesFile.getPropValue("driverIndexPath",
+                System.getProperty("user.home") + "/.cache/selenium-java/driver-index.properties"));
+
+        if (majorVersion.isPresent()) {
+            String key = browser + "." + majorVersion.get();
+            String cachedPath = loadIndex(indexPath).getProperty(key);
+            if (cachedPath != null && Files.isExecutable(Paths.get(cachedPath))) {
+                System.out.println("Using cached driver for " + key + ": " + cachedPath);
+                return cachedPath;
+            }
+
+            manager.setup();
+            String driverPath = manager.getDownloadedDriverPath();
+            storeInIndex(indexPath, key, driverPath);
+            return driverPath;
+        }
+
+        // Browser version unknown: let WebDriverManager decide, but still only once per JVM
+        manager.setup();
+        return manager.getDownloadedDriverPath();
+    }
+
+    private static WebDriverManager managerFor(String browser) {
+        switch (browser) {
+            case "firefox":
+                return WebDriverManager.firefoxdriver();
+            case "edge":
+                return WebDriverManager.edgedriver();
+            default:
+                return WebDriverManager.chromedriver();
+        }
+    }
+
+    private static String driverProperty(String browser) {
+        switch (browser) {
+            case "firefox":
+                return "webdriver.gecko.driver";
+            case "edge":
+                return "webdriver.edge.driver";
+            default:
+                return "webdriver.chrome.driver";
+        }
+    }
+
+    /**
+     * Reads the major version of the installed browser by running "browser --version".
+     *
+     * @param manager The WebDriverManager used to locate the browser binary
+     * @return the major version, or empty if it cannot be detected locally
+     */
+    private static Optional<String> detectBrowserMajorVersion(WebDriverManager manager) {
+        try {
+            Optional<Path> browserPath = manager.getBrowserPath();
+            if (!browserPath.isPresent()) {
+                return Optional.empty();
+            }
+            // Output goes to a file so a browser that never prints or never exits cannot block the read
+            Path outputFile = Files.createTempFile("browser-version", ".txt");
+            String output;
+            try {
+                Process process = new ProcessBuilder(browserPath.get().toString(), "--version")
+                        .redirectErrorStream(true).redirectOutput(outputFile.toFile()).start();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    System.out.println("Browser version check timed out: " + browserPath.get());
+                    return Optional.empty();
+                }
+                try (BufferedReader reader = Files.newBufferedReader(outputFile, StandardCharsets.UTF_8)) {
+                    output = reader.readLine();
+                }
+            } finally {
+                Files.deleteIfExists(outputFile);
+            }
+            if (output == null) {
+                return Optional.empty();
+            }
+            Matcher matcher = VERSION_PATTERN.matcher(output);
+            return matcher.find() ? Optional.of(matcher.group(1)) : Optional.<String>empty();
+        } catch (Exception e) {
+            System.out.println("Could not detect browser version: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Properties loadIndex(Path indexPath) {
+        Properties index = new Properties();
+        if (Files.exists(indexPath)) {
+            try (InputStream in = Files.newInputStream(indexPath)) {
+                index.load(in);
+            } catch (IOException e) {
+                System.out.println("Could not read driver index " + indexPath + ": " + e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Adds an entry to the index. The index is written to a temporary file and moved into place,
+     * so readers in other JVMs never see a half-written file.
+     */
+    private static synchronized void storeInIndex(Path indexPath, String key, String driverPath) {
+        if (driverPath == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(indexPath.toAbsolutePath().getParent());
+            Properties index = loadIndex(indexPath);
+            index.setProperty(key, driverPath);
+            Path tempFile = Files.createTempFile(indexPath.toAbsolutePath().getParent(), "driver-index", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                index.store(out, "Browser major version -> driver binary");
+            }
+            Files.move(tempFile, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not update driver index " + indexPath + ": " + e.getMessage());
+        }
+    }
+}
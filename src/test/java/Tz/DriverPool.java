@@ -0,0 +1,403 @@
+package Tz;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import properties.ConfigService;
+import ui.driver.DevToolsBridge;
+import ui.driver.SessionStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DriverPool hands out thread-confined WebDriver instances so TestNG can run test methods in parallel.
+ * <p>
+ * The pool is bounded by {@code driverPoolSize} from configs.properties. Each worker thread leases
+ * at most one driver at a time; repeated {@link #lease()} calls from the same thread return the same
+ * driver until it is handed back with {@link #release()}. Drivers are health-checked on return and
+ * replaced when their session is gone.
+ * <p>
+ * With {@code driverPool.recycle=true} a returned browser is kept alive and reset (cookies, storage,
+ * cache, extra windows) instead of being quit, so the launch cost is paid once per worker. A browser is
+ * retired after {@code driverPool.maxUses} uses or once its page heap exceeds {@code driverPool.maxHeapMb}.
+ * A lease counts as one use; a thread that keeps its lease for many units of work (e.g. a crawler worker)
+ * reports each one with {@link #completeUse()}, so its browser is still retired on schedule.
+ * With recycling disabled a returned healthy browser goes back to the pool as it is, without any reset,
+ * so cookies and storage carry over to the next lease.
+ * <p>
+ * Typical usage:
+ * <pre>
+ *     WebDriver driver = DriverPool.getInstance().lease();
+ *     ...
+ *     DriverPool.getInstance().release();
+ * </pre>
+ */
+public class DriverPool {
+
+    private static DriverPool instance;
+
+    private final String browserType;
+    private final int size;
+    private final long leaseTimeoutSeconds;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<WebDriver> idleDrivers = new LinkedBlockingDeque<>();
+    private final Set<WebDriver> allDrivers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<WebDriver> leasedDriver = new ThreadLocal<>();
+    private final Map<WebDriver, Integer> useCounts = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> usesReported = new ThreadLocal<>();
+    /** Origins each browser has loaded documents from, so a reset can clear the storage of all of them. */
+    private final Map<WebDriver, Set<String>> touchedOrigins = new ConcurrentHashMap<>();
+    private boolean recycle = true;
+    private int maxUses = 25;
+    private long maxHeapBytes = 512L * 1024 * 1024;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool for the given browser.
+     *
+     * @param browserType         the browser to launch for new drivers (chrome, firefox, edge).
+     * @param size                the maximum number of drivers alive at the same time.
+     * @param leaseTimeoutSeconds how long a thread waits for a free driver before failing.
+     */
+    public DriverPool(String browserType, int size, long leaseTimeoutSeconds) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Driver pool size must be at least 1, was " + size);
+        }
+        this.browserType = browserType;
+        this.size = size;
+        this.leaseTimeoutSeconds = leaseTimeoutSeconds;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Returns the shared pool configured from configs.properties.
+     * <p>
+     * Reads {@code browserType}, {@code driverPoolSize} and {@code driverLeaseTimeout} (seconds).
+     *
+     * @return the JVM-wide DriverPool instance.
+     */
+    public static synchronized DriverPool getInstance() {
+        if (instance == null) {
+            ConfigService config = ConfigService.getInstance();
+            instance = new DriverPool(
+                    config.get("browserType", "chrome"),
+                    config.getInt("driverPoolSize", 1),
+                    config.getLong("driverLeaseTimeout", 300));
+            instance.setRecycling(
+                    config.getBoolean("driverPool.recycle", true),
+                    config.getInt("driverPool.maxUses", 25),
+                    config.getLong("driverPool.maxHeapMb", 512));
+            // Recycled browsers outlive the tests; make sure none is left behind when the JVM exits
+            final DriverPool pool = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdownNow, "driver-pool-shutdown"));
+        }
+        return instance;
+    }
+
+    /**
+     * Configures whether returned browsers are reset and retired on schedule, or reused as they are.
+     *
+     * @param recycle   true to reset browsers between leases and retire them after {@code maxUses}.
+     * @param maxUses   the number of uses after which a browser is retired.
+     * @param maxHeapMb the page heap size in MB above which a browser is retired.
+     */
+    public void setRecycling(boolean recycle, int maxUses, long maxHeapMb) {
+        this.recycle = recycle;
+        this.maxUses = maxUses;
+        this.maxHeapBytes = maxHeapMb * 1024 * 1024;
+    }
+
+    /**
+     * Whether returned browsers are reset and retired on schedule instead of reused as they are.
+     *
+     * @return true if recycling is enabled.
+     */
+    public boolean isRecycling() {
+        return recycle;
+    }
+
+    /**
+     * Gets the browser this pool launches.
+     *
+     * @return the browser type, e.g. "chrome".
+     */
+    public String getBrowserType() {
+        return browserType;
+    }
+
+    /**
+     * Leases a driver for the calling thread.
+     * <p>
+     * Reuses an idle driver when one is available, otherwise launches a new browser as long
+     * as the pool has not reached its size. Blocks when every driver is leased.
+     *
+     * @return the WebDriver confined to the calling thread.
+     * @throws IllegalStateException if no driver becomes available within the lease timeout, or the pool is shut down.
+     */
+    public WebDriver lease() {
+        WebDriver driver = leasedDriver.get();
+        if (driver != null) {
+            return driver;
+        }
+        if (closed) {
+            throw new IllegalStateException("WebDriver pool is shut down");
+        }
+
+        try {
+            if (!permits.tryAcquire(leaseTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("No WebDriver available after " + leaseTimeoutSeconds + "s (pool size " + size + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a WebDriver", e);
+        }
+
+        try {
+            if (closed) {
+                throw new IllegalStateException("WebDriver pool is shut down");
+            }
+            driver = idleDrivers.pollFirst();
+            if (driver == null) {
+                driver = new BaseSetup().setupDriver(browserType);
+                allDrivers.add(driver);
+                if (recycle) {
+                    trackOrigins(driver);
+                }
+            }
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        leasedDriver.set(driver);
+        usesReported.set(false);
+        BaseSetup.bindDriver(driver);
+        return driver;
+    }
+
+    /**
+     * Returns the calling thread's driver to the pool.
+     * <p>
+     * A driver that fails the health check is quit and dropped, so the next lease launches a fresh one.
+     * After {@link #shutdown()} every returned driver is quit.
+     */
+    public void release() {
+        WebDriver driver = leasedDriver.get();
+        if (driver == null) {
+            return;
+        }
+        leasedDriver.remove();
+        BaseSetup.unbindDriver();
+        if (!Boolean.TRUE.equals(usesReported.get())) {
+            useCounts.merge(driver, 1, Integer::sum);
+        }
+        usesReported.remove();
+
+        try {
+            if (closed) {
+                discard(driver);
+            } else if (!isHealthy(driver)) {
+                System.out.println("Discarding unhealthy WebDriver: " + driver);
+                discard(driver);
+            } else if (recycle && shouldRetire(driver)) {
+                System.out.println("Retiring WebDriver after " + useCounts.get(driver) + " uses: " + driver);
+                discard(driver);
+            } else if (!recycle || resetState(driver)) {
+                idleDrivers.offerFirst(driver);
+                // shutdown() may have drained the idle drivers while this one was being reset
+                if (closed && idleDrivers.remove(driver)) {
+                    discard(driver);
+                }
+            } else {
+                discard(driver);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Counts one unit of work done with the calling thread's driver, and releases the driver if it has
+     * reached {@code maxUses} or its heap limit. The next {@link #lease()} then gets a fresh browser.
+     * Once this is called, the lease itself no longer counts as a use.
+     *
+     * @return true if the driver was released and must be leased again.
+     */
+    public boolean completeUse() {
+        WebDriver driver = leasedDriver.get();
+        if (driver == null) {
+            return false;
+        }
+        usesReported.set(true);
+        useCounts.merge(driver, 1, Integer::sum);
+        if (recycle && shouldRetire(driver)) {
+            release();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the pool: quits the idle drivers and the calling thread's own lease. Drivers leased by other
+     * threads keep working and are quit when they are released; no new leases are handed out.
+     */
+    public void shutdown() {
+        closed = true;
+        release();
+        for (WebDriver driver = idleDrivers.pollFirst(); driver != null; driver = idleDrivers.pollFirst()) {
+            discard(driver);
+        }
+    }
+
+    /**
+     * Closes the pool and quits every driver it owns, including leased ones. Only for JVM exit, when no
+     * thread will release its driver anymore.
+     */
+    public void shutdownNow() {
+        shutdown();
+        for (WebDriver driver : allDrivers) {
+            discard(driver);
+        }
+    }
+
+    /**
+     * Gets the maximum number of drivers this pool keeps alive.
+     *
+     * @return the pool size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Checks that the driver still has a live session and at least one window.
+     *
+     * @param driver the driver to check.
+     * @return true if the driver can be handed to another test; false otherwise.
+     */
+    private boolean isHealthy(WebDriver driver) {
+        try {
+            if (driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() == null) {
+                return false;
+            }
+            return !driver.getWindowHandles().isEmpty();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a browser has been used too often or grown too large to be reused.
+     */
+    private boolean shouldRetire(WebDriver driver) {
+        if (useCounts.getOrDefault(driver, 0) >= maxUses) {
+            return true;
+        }
+        try {
+            Object heap = ((JavascriptExecutor) driver)
+                    .executeScript("return window.performance && performance.memory ? performance.memory.usedJSHeapSize : null");
+            return heap instanceof Number && ((Number) heap).longValue() > maxHeapBytes;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the origin of every document and frame the browser loads, as long as it lives.
+     */
+    private void trackOrigins(WebDriver driver) {
+        Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+        if (!bridge.isPresent()) {
+            return;
+        }
+        final Set<String> origins = ConcurrentHashMap.newKeySet();
+        touchedOrigins.put(driver, origins);
+        bridge.get().enable("Page");
+        bridge.get().addListener("Page.frameNavigated", event -> {
+            Object frame = event.get("frame");
+            if (frame instanceof Map) {
+                Object origin = ((Map<?, ?>) frame).get("securityOrigin");
+                if (origin != null && origin.toString().startsWith("http")) {
+                    origins.add(origin.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Brings a browser back to a clean state: one window, no cookies, storage or cache, on about:blank.
+     * The stored session's localStorage restore script is removed, and the storage of every origin the
+     * browser visited since its last reset is cleared.
+     *
+     * @param driver the driver to reset.
+     * @return true if the reset succeeded and the driver can be reused; false otherwise.
+     */
+    private boolean resetState(WebDriver driver) {
+        try {
+            List<String> handles = new ArrayList<>(driver.getWindowHandles());
+            for (String handle : handles.subList(1, handles.size())) {
+                driver.switchTo().window(handle).close();
+            }
+            driver.switchTo().window(handles.get(0));
+
+            // Otherwise the next test's pages get the previous session's localStorage back
+            SessionStore.getInstance().forget(driver);
+            ((JavascriptExecutor) driver).executeScript(
+                    "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+
+            Optional<DevToolsBridge> bridge = DevToolsBridge.forDriver(driver);
+            if (bridge.isPresent()) {
+                Set<String> origins = new HashSet<>();
+                Set<String> touched = touchedOrigins.get(driver);
+                if (touched != null) {
+                    origins.addAll(touched);
+                    touched.removeAll(origins);
+                }
+                Object origin = ((JavascriptExecutor) driver).executeScript("return window.location.origin");
+                if (origin != null && origin.toString().startsWith("http")) {
+                    origins.add(origin.toString());
+                }
+                for (String visited : origins) {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("origin", visited);
+                    params.put("storageTypes", "all");
+                    bridge.get().send("Storage.clearDataForOrigin", params);
+                }
+                bridge.get().send("Network.clearBrowserCookies", Collections.<String, Object>emptyMap());
+                bridge.get().send("Network.clearBrowserCache", Collections.<String, Object>emptyMap());
+            } else {
+                driver.manage().deleteAllCookies();
+            }
+
+            driver.navigate().to("about:blank");
+            return true;
+        } catch (Exception e) {
+            System.out.println("Could not reset WebDriver state: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(WebDriver driver) {
+        allDrivers.remove(driver);
+        useCounts.remove(driver);
+        touchedOrigins.remove(driver);
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            System.out.println("Error while quitting WebDriver: " + e.getMessage());
+        } finally {
+            BrowserProfile.releaseUserDataDir(driver);
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package Tz;
 
+import DataExport.CourseExporter;
+import DocGenerate.CatalogWriter;
 import PageFactory.*;
-import io.github.bonigarcia.wdm.WebDriverManager;
+import Repository.CourseRepository;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
+import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.SkipException;
 import org.testng.annotations.*;
 import properties.PropertiesFile;
-import ui.driver.ValidateUIHelpers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
 
 import static DocGenerate.DocGenerate.createDocument;
 
 @Listeners(ReportTC.TestListener.class)
 public class TestSuite {
-    private  WebDriver driver;
     private  String courseName;
     private  String courseLink;
     private  String courseDescription;
@@ -22,36 +34,130 @@ public class TestSuite {
     private  LinkedHashMap Instructor;
     private  LinkedHashMap courseLeaner;
     private  LinkedHashMap courseOutLine;
-    private ValidateUIHelpers validateUIHelpers;
-    @BeforeClass
+    private  CourseRecord courseRecord;
+    @BeforeMethod
     public void setupDriver() {
-        driver = new BaseSetup().setupDriver("chrome");
-        validateUIHelpers = new ValidateUIHelpers(driver);
+        DriverPool.getInstance().lease();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void releaseDriver() {
+        DriverPool.getInstance().release();
     }
 
 
     @Test
     public void TestCase1() throws Exception {
-        PageObjectFactory pageFactory;
+        WebDriver driver = DriverPool.getInstance().lease();
 
         PropertiesFile.setPropertiesFile();
-        driver.get(PropertiesFile.getPropValue("courseLink"));
-        pageFactory = new PageObjectFactory();
         courseLink = PropertiesFile.getPropValue("courseLink");
-        courseName = pageFactory.getPage(driver, CoursePage.class).getCourseName();
-        courseDescription= pageFactory.getPage(driver, CoursePage.class).getCourseDescription();
-        courseDuration = pageFactory.getPage(driver, CoursePage.class).getCourseDuration();
-        courseLeaner = pageFactory.getPage(driver, CoursePage.class).getCourseLearner();
-        Instructor = pageFactory.getPage(driver, CoursePage.class).getCourseInstructors();
-        pageFactory.getPage(driver, CoursePage.class).clickEnroll();
-        pageFactory.getPage(driver, LoginPage.class).clickSignIn();
-        pageFactory.getPage(driver, LoginPage.class).login(PropertiesFile.getPropValue("email"),PropertiesFile.getPropValue("password"));
-        pageFactory.getPage(driver, CoursePlanPage.class).useFreePlan();
-        courseOutLine = pageFactory.getPage(driver, CourseDetailPage.class).getCourseOutline();
+        CourseRecord record = CourseCrawler.scrapeCourse(driver, courseLink, true, null);
+        CourseSnapshot snapshot = record.getSnapshot();
+        courseName = snapshot.getName();
+        courseDescription = snapshot.getDescription();
+        courseDuration = snapshot.getDuration();
+        courseLeaner = snapshot.getLearnerSection();
+        Instructor = snapshot.getInstructorSection();
+        courseOutLine = (LinkedHashMap) record.toDocumentData().get("CourseDetail");
+        courseRecord = record;
+    }
+
+    @Test
+    public void CrawlCatalog(ITestContext context) throws Exception {
+        String linksFile = PropertiesFile.getPropValue("courseLinksFile", "");
+        if (linksFile.isEmpty()) {
+            throw new SkipException("courseLinksFile is not set in configs.properties");
+        }
+        // The crawler leases its own drivers; don't hold one while it runs
+        DriverPool.getInstance().release();
+
+        // In a parallel suite the other test methods hold pool drivers while the crawl runs
+        String parallel = context.getSuite().getParallel();
+        boolean parallelSuite = parallel != null && !"none".equalsIgnoreCase(parallel) && !"false".equalsIgnoreCase(parallel);
+        CourseCrawler.CrawlResult result;
+        CourseCrawler crawler = CourseCrawler.fromConfig(parallelSuite ? context.getAllTestMethods().length - 1 : 0);
+        Optional<CourseExporter> exporter = CourseExporter.fromConfig();
+        Optional<CourseRepository> repository = CourseRepository.fromConfig();
+        try {
+            // Skipping unchanged courses is only safe for sinks that already received them
+            List<String> sinks = new ArrayList<>();
+            if (exporter.isPresent()) {
+                sinks.add(exporter.get().getTarget());
+            }
+            if (repository.isPresent()) {
+                sinks.add(repository.get().getTarget());
+            }
+            crawler.bindSinks(String.join(", ", sinks), repository.isPresent() && repository.get().isEmpty());
+
+            // Courses are exported and queued for the database as they finish, so downstream jobs
+            // can start before the crawl ends
+            result = crawler.crawl(CourseCrawler.readLinks(Paths.get(linksFile)),
+                    record -> handOver(exporter, repository, record));
+        } finally {
+            if (exporter.isPresent()) {
+                exporter.get().close();
+            }
+            if (repository.isPresent()) {
+                repository.get().close();
+                // Saving is asynchronous; courses whose batch failed must be crawled again next time
+                crawler.forget(repository.get().getFailedLinks());
+            }
+        }
+        Assert.assertFalse(result.getRecords().isEmpty(), "No course could be scraped: " + result.getFailures());
+
+        // Unchanged courses come from the index, so the catalog stays complete; skip it if nothing changed.
+        // The catalog is written after the crawl, so every record is in memory until then: the result and the
+        // index both hold the full catalog, only CatalogWriter itself is bounded by catalog.maxInFlight
+        Path catalogFile = Paths.get("./output/Catalog.docx");
+        if (result.getChangedRecords().isEmpty() && Files.exists(catalogFile)) {
+            System.out.println("No course changed, keeping " + catalogFile);
+            return;
+        }
+        try (CatalogWriter catalog = CatalogWriter.open(catalogFile)) {
+            for (CourseRecord record : result.getRecords()) {
+                catalog.append(record);
+            }
+        }
+    }
+
+    private static void handOver(Optional<CourseExporter> exporter, Optional<CourseRepository> repository,
+                                 CourseRecord record) {
+        try {
+            if (repository.isPresent()) {
+                repository.get().save(record);
+            }
+            if (exporter.isPresent()) {
+                exporter.get().write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing " + record.getLink());
+        }
     }
 
     @AfterTest
     public void createDocumentFile () {
+        // Skip the document if the course has the fingerprint it had when the document was last written
+        Path documentFile = Paths.get("./output/Course.docx");
+        Path fingerprintFile = Paths.get("./output/Course.docx.fingerprint");
+        String fingerprint = courseRecord == null ? null : courseRecord.fingerprint();
+        FileTime previous = null;
+        try {
+            if (fingerprint != null && Files.exists(documentFile) && Files.exists(fingerprintFile)
+                    && fingerprint.equals(new String(Files.readAllBytes(fingerprintFile), StandardCharsets.UTF_8).trim())) {
+                System.out.println("Course did not change, keeping " + documentFile);
+                return;
+            }
+            // A failed write keeps the old document; without a fingerprint the next run writes it again
+            Files.deleteIfExists(fingerprintFile);
+            previous = Files.exists(documentFile) ? Files.getLastModifiedTime(documentFile) : null;
+        } catch (IOException e) {
+            System.out.println("Could not check the course fingerprint: " + e.getMessage());
+        }
+
         // Generate Template
         LinkedHashMap<String, Object> data = new LinkedHashMap<>();
         data.put("Title", courseName);
@@ -63,9 +169,19 @@ public class TestSuite {
         data.put("CourseLink", courseLink);
 
         // Create file
-        createDocument(data,"./output/Course.docx");
+        createDocument(data, documentFile.toString());
+        if (fingerprint != null && Files.exists(documentFile)) {
+            try {
+                if (Files.getLastModifiedTime(documentFile).equals(previous)) {
+                    return;
+                }
+                Files.write(fingerprintFile, fingerprint.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.out.println("Could not save the course fingerprint: " + e.getMessage());
+            }
+        }
     }
-    @AfterTest
+    @AfterSuite(alwaysRun = true)
     public void CleanUP() throws Exception {
         try {
             System.out.println("end TCs");
@@ -74,7 +190,7 @@ public class TestSuite {
             throw new Exception(e);
         }
         finally{
-            driver.quit();
+            DriverPool.getInstance().shutdown();
 
         }
 
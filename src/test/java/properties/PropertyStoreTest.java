@@ -0,0 +1,164 @@
+package properties;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks how PropertyStore rewrites a properties file and that it waits for writers in other processes.
+ */
+public class PropertyStoreTest {
+
+    @Test
+    public void changedKeysAreReplacedInPlace() throws Exception {
+        List<String> lines = Arrays.asList("# Pool", "browserType=chrome", "", "driverPoolSize = 4", "! legacy", "other=x");
+
+        String merged = PropertyStore.merge(lines, Collections.singletonMap("driverPoolSize", "8"), "\n");
+
+        Assert.assertEquals(merged, "# Pool\nbrowserType=chrome\n\ndriverPoolSize=8\n! legacy\nother=x\n");
+    }
+
+    @Test
+    public void newKeysAreAppended() throws Exception {
+        Map<String, String> changes = new LinkedHashMap<>();
+        changes.put("b", "2");
+        changes.put("a", "1");
+
+        String merged = PropertyStore.merge(Arrays.asList("a=0"), changes, "\n");
+
+        Assert.assertEquals(merged, "a=1\nb=2\n");
+    }
+
+    @Test
+    public void continuationLinesAreReplacedAsOneEntry() throws Exception {
+        List<String> lines = Arrays.asList("list=one,\\", "     two,\\", "     three", "kept=a\\", "  b", "last=z");
+
+        String merged = PropertyStore.merge(lines, Collections.singletonMap("list", "four"), "\n");
+
+        Assert.assertEquals(merged, "list=four\nkept=a\\\n  b\nlast=z\n");
+        Assert.assertEquals(load(merged).getProperty("kept"), "ab");
+    }
+
+    @Test
+    public void escapedBackslashIsNotAContinuation() throws Exception {
+        List<String> lines = Arrays.asList("path=C:\\\\temp\\\\", "next=1");
+
+        String merged = PropertyStore.merge(lines, Collections.singletonMap("next", "2"), "\n");
+
+        Assert.assertEquals(load(merged).getProperty("path"), "C:\\temp\\");
+        Assert.assertEquals(load(merged).getProperty("next"), "2");
+    }
+
+    @Test
+    public void keysAndValuesAreEscaped() throws Exception {
+        Map<String, String> changes = new LinkedHashMap<>();
+        changes.put("key with spaces:and=separators", "  leading spaces, #hash, caf\u00e9 \u2603");
+        changes.put("networkIdle.ignore", ".*(google-analytics|hotjar)\\..*");
+
+        Properties loaded = load(PropertyStore.merge(Collections.<String>emptyList(), changes, "\n"));
+
+        Assert.assertEquals(loaded.getProperty("key with spaces:and=separators"), "  leading spaces, #hash, caf\u00e9 \u2603");
+        Assert.assertEquals(loaded.getProperty("networkIdle.ignore"), ".*(google-analytics|hotjar)\\..*");
+    }
+
+    @Test
+    public void lineSeparatorOfTheFileIsKept() throws Exception {
+        Assert.assertEquals(PropertyStore.lineSeparatorOf("a=1\r\nb=2\r\n"), "\r\n");
+        Assert.assertEquals(PropertyStore.lineSeparatorOf("a=1\nb=2"), "\n");
+        Assert.assertEquals(PropertyStore.lineSeparatorOf("a=1"), System.lineSeparator());
+
+        Path file = Files.createTempDirectory("props").resolve("configs.properties");
+        Files.write(file, "# Windows file\r\na=1\r\nb=2\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        PropertyStore store = new PropertyStore(file, 60000);
+        store.set("propertyStoreTest.separator", "3");
+        store.flush();
+
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1),
+                "# Windows file\r\na=1\r\nb=2\r\npropertyStoreTest.separator=3\r\n");
+    }
+
+    @Test
+    public void permissionsOfTheFileAreKept() throws Exception {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Path file = Files.createTempDirectory("props").resolve("configs.properties");
+        Files.write(file, "a=1\n".getBytes(StandardCharsets.ISO_8859_1));
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-r--"));
+        PropertyStore store = new PropertyStore(file, 60000);
+        store.set("propertyStoreTest.permissions", "2");
+        store.flush();
+
+        Assert.assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), "rw-rw-r--");
+    }
+
+    @Test(timeOut = 60000)
+    public void flushWaitsForTheLockOfAnotherProcess() throws Exception {
+        Path file = Files.createTempDirectory("props").resolve("configs.properties");
+        Files.write(file, "a=1\n".getBytes(StandardCharsets.ISO_8859_1));
+        Path lockFile = file.resolveSibling("configs.properties.lock");
+        long holdMillis = 1500;
+
+        Process holder = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), LockHolder.class.getName(),
+                lockFile.toString(), String.valueOf(holdMillis))
+                .redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(holder.getInputStream(), StandardCharsets.UTF_8))) {
+            Assert.assertEquals(output.readLine(), "locked", "Lock holder did not start");
+
+            PropertyStore store = new PropertyStore(file, 60000);
+            store.set("propertyStoreTest.lock", "2");
+            long start = System.nanoTime();
+            store.flush();
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Assert.assertTrue(waited >= holdMillis / 2, "Flush did not wait for the lock, took " + waited + " ms");
+            Assert.assertEquals(load(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1))
+                    .getProperty("propertyStoreTest.lock"), "2");
+        } finally {
+            Assert.assertTrue(holder.waitFor(30, TimeUnit.SECONDS), "Lock holder did not exit");
+        }
+    }
+
+    /**
+     * Holds the lock on a file for a while in a separate JVM: {@code LockHolder <file> <millis>}.
+     */
+    public static final class LockHolder {
+        public static void main(String[] args) throws Exception {
+            try (FileChannel channel = FileChannel.open(new File(args[0]).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                System.out.println("locked");
+                System.out.flush();
+                Thread.sleep(Long.parseLong(args[1]));
+                lock.release();
+            }
+        }
+    }
+
+    private static Properties load(String content) throws Exception {
+        Properties properties = new Properties();
+        properties.load(new StringReader(content));
+        return properties;
+    }
+}
@@ -0,0 +1,164 @@
+package ui.driver;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes packs into a temporary directory and reopens them the ways a run, a crash and the command line do.
+ */
+public class ArtifactPackTest {
+
+    @Test
+    public void appendedRecordsAreFoundAfterReopening() throws Exception {
+        Path packPath = Files.createTempDirectory("pack").resolve("run.pack");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-1.png", bytes("a1"));
+            pack.append("search", "step-1.png", bytes("b1"));
+            pack.append("login", "step-2.png", bytes("a2"));
+        }
+
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            Assert.assertEquals(pack.read("login", "step-2.png").get(), bytes("a2"));
+            Assert.assertEquals(pack.read("search", "step-1.png").get(), bytes("b1"));
+            Assert.assertFalse(pack.read("search", "step-2.png").isPresent());
+            Assert.assertEquals(steps(pack.entries("login")), Arrays.asList("step-2.png", "step-1.png"));
+            Assert.assertEquals(steps(pack.entries()), Arrays.asList("step-1.png", "step-1.png", "step-2.png"));
+            Assert.assertEquals(pack.entries().get(1).getTest(), "search");
+        }
+    }
+
+    @Test
+    public void indexGrowsPastItsInitialSlots() throws Exception {
+        Path packPath = Files.createTempDirectory("pack").resolve("run.pack");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            for (int i = 0; i < 100; i++) {
+                pack.append("test-" + (i % 7), "step-" + i, bytes("content " + i));
+            }
+        }
+
+        try (ArtifactPack pack = ArtifactPack.openReadOnly(packPath)) {
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(pack.read("test-" + (i % 7), "step-" + i).get(), bytes("content " + i));
+            }
+            Assert.assertEquals(pack.entries("test-3").size(), 14);
+        }
+    }
+
+    @Test
+    public void tornRecordIsCutOffAndAppendsContinue() throws Exception {
+        Path packPath = Files.createTempDirectory("pack").resolve("run.pack");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-1.png", bytes("a1"));
+        }
+        long complete = Files.size(packPath);
+        appendRaw(packPath, new byte[]{0x43, 0x41, 0x50, 0x52, 0, 0, 0});
+
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            Assert.assertEquals(Files.size(packPath), complete, "Torn record was not cut off");
+            pack.append("login", "step-2.png", bytes("a2"));
+        }
+
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            Assert.assertEquals(steps(pack.entries()), Arrays.asList("step-1.png", "step-2.png"));
+            Assert.assertEquals(pack.read("login", "step-2.png").get(), bytes("a2"));
+        }
+    }
+
+    @Test
+    public void recordsBehindTheIndexAreIndexedOnOpen() throws Exception {
+        Path dir = Files.createTempDirectory("pack");
+        Path packPath = dir.resolve("run.pack");
+        Path indexPath = dir.resolve("run.idx");
+        Path staleIndex = dir.resolve("stale.idx");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-1.png", bytes("a1"));
+        }
+        Files.copy(indexPath, staleIndex);
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-2.png", bytes("a2"));
+        }
+        // As if the process died after writing the record but before the index reached the disk
+        Files.copy(staleIndex, indexPath, StandardCopyOption.REPLACE_EXISTING);
+
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            Assert.assertEquals(pack.read("login", "step-2.png").get(), bytes("a2"));
+            Assert.assertEquals(steps(pack.entries("login")), Arrays.asList("step-2.png", "step-1.png"));
+        }
+    }
+
+    @Test
+    public void missingIndexIsRebuilt() throws Exception {
+        Path dir = Files.createTempDirectory("pack");
+        Path packPath = dir.resolve("run.pack");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-1.png", bytes("a1"));
+            pack.append("login", "step-2.png", bytes("a2"));
+        }
+        Files.delete(dir.resolve("run.idx"));
+
+        try (ArtifactPack pack = ArtifactPack.openReadOnly(packPath)) {
+            Assert.assertEquals(pack.read("login", "step-1.png").get(), bytes("a1"));
+        }
+        Assert.assertFalse(Files.exists(dir.resolve("run.idx")), "Read-only open wrote an index");
+
+        ArtifactPack.rebuildIndex(packPath);
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            Assert.assertEquals(steps(pack.entries("login")), Arrays.asList("step-2.png", "step-1.png"));
+        }
+    }
+
+    @Test
+    public void readOnlyOpenLeavesTheFilesAlone() throws Exception {
+        Path dir = Files.createTempDirectory("pack");
+        Path packPath = dir.resolve("run.pack");
+        try (ArtifactPack pack = new ArtifactPack(packPath, 16)) {
+            pack.append("login", "step-1.png", bytes("a1"));
+        }
+        // A record that is still being written by another process
+        appendRaw(packPath, new byte[]{0x43, 0x41, 0x50, 0x52, 0, 0});
+        long size = Files.size(packPath);
+        byte[] index = Files.readAllBytes(dir.resolve("run.idx"));
+
+        try (ArtifactPack pack = ArtifactPack.openReadOnly(packPath)) {
+            Assert.assertEquals(steps(pack.entries()), Arrays.asList("step-1.png"));
+            Assert.assertEquals(pack.read("login", "step-1.png").get(), bytes("a1"));
+            try {
+                pack.append("login", "step-2.png", bytes("a2"));
+                Assert.fail("Appending to a read-only pack succeeded");
+            } catch (IllegalStateException expected) {
+                // read-only
+            }
+        }
+        Assert.assertEquals(Files.size(packPath), size, "Read-only open changed the pack");
+        Assert.assertEquals(Files.readAllBytes(dir.resolve("run.idx")), index, "Read-only open changed the index");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> steps(List<ArtifactPack.Entry> entries) {
+        List<String> steps = new ArrayList<>();
+        for (ArtifactPack.Entry entry : entries) {
+            steps.add(entry.getStep());
+        }
+        return steps;
+    }
+
+    private static void appendRaw(Path file, byte[] content) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(content));
+        }
+    }
+}